@@ -0,0 +1,359 @@
+package so.onekey.app.wallet;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Verified update artifacts kept in one app-owned directory, indexed by version and digest.
+ * <p>
+ * The index is a text file next to the artifacts, one tab separated line per entry:
+ * {@code <version> <digest> <size> <lastUsedAt> <path>}. Entries are evicted oldest-first
+ * once their total size exceeds the byte budget. {@link #sweep(String)} drops everything the
+ * index does not account for, such as partial files of a download that never finished.
+ * Files registered with {@link #begin(File)} are in use and never deleted. An entry may keep
+ * the signed manifest it was verified against in {@code <version>.asc}, so a later process can
+ * check the signature again instead of trusting the index.
+ */
+public class ArtifactCache {
+    private static final String TAG = "UPDATE APP";
+    public static final long DEFAULT_BUDGET_BYTES = 400L * 1024 * 1024;
+    private static final String INDEX_NAME = "index";
+    private static final String INDEX_TEMP_NAME = "index.tmp";
+    private static final String SIGNATURE_SUFFIX = ".asc";
+
+    public static class Entry {
+        public final String version;
+        public final String digest;
+        public final File file;
+        public final long size;
+        long lastUsedAt;
+
+        Entry(String version, String digest, File file, long size, long lastUsedAt) {
+            this.version = version;
+            this.digest = digest;
+            this.file = file;
+            this.size = size;
+            this.lastUsedAt = lastUsedAt;
+        }
+
+        boolean isIntact() {
+            return file.isFile() && file.length() == size;
+        }
+    }
+
+    private final File dir;
+    private final Set<File> inUse = new HashSet<>();
+    private long budgetBytes = DEFAULT_BUDGET_BYTES;
+    @Nullable
+    private Map<String, Entry> entries;
+    private long lastUsedAt = 0;
+
+    public ArtifactCache(File dir) {
+        this.dir = dir;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Protects {@code file} from sweeping and eviction until {@link #end(File)}.
+     */
+    public synchronized void begin(File file) {
+        inUse.add(file.getAbsoluteFile());
+    }
+
+    public synchronized void end(File file) {
+        inUse.remove(file.getAbsoluteFile());
+    }
+
+    /**
+     * Returns the intact entry for {@code version}, moved to {@code target} when it is stored
+     * elsewhere, or null.
+     */
+    @Nullable
+    public synchronized Entry claim(String version, File target) {
+        Map<String, Entry> index = index();
+        Entry entry = index.get(version);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isIntact()) {
+            remove(version);
+            return null;
+        }
+        if (!entry.file.getAbsoluteFile().equals(target.getAbsoluteFile())) {
+            target.delete();
+            if (!entry.file.renameTo(target)) {
+                return null;
+            }
+            entry = new Entry(version, entry.digest, target.getAbsoluteFile(), entry.size, entry.lastUsedAt);
+            index.put(version, entry);
+        }
+        entry.lastUsedAt = nextUseTime();
+        save();
+        return entry;
+    }
+
+    /**
+     * Returns the intact entry stored at {@code file}, or null.
+     */
+    @Nullable
+    public synchronized Entry find(File file) {
+        for (Entry entry : index().values()) {
+            if (entry.file.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+                return entry.isIntact() ? entry : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records a verified artifact and evicts older ones beyond the budget, never this one.
+     */
+    public synchronized Entry put(String version, String digest, File file) {
+        return put(version, digest, file, null);
+    }
+
+    /**
+     * Same as {@link #put(String, String, File)}, also keeps the armored {@code signedManifest}
+     * the digest was taken from, or drops the one of an earlier entry when null.
+     */
+    public synchronized Entry put(String version, String digest, File file, @Nullable String signedManifest) {
+        Map<String, Entry> index = index();
+        Entry previous = index.get(version);
+        if (previous != null && !previous.file.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+            previous.file.delete();
+        }
+        File signature = signatureFile(version);
+        if (signedManifest == null) {
+            signature.delete();
+        } else if (!writeSignature(signature, signedManifest)) {
+            // Without it the next process verifies against the published SHA256SUMS.
+            signature.delete();
+        }
+        Entry entry = new Entry(version, digest, file.getAbsoluteFile(), file.length(), nextUseTime());
+        index.put(version, entry);
+        evict(version);
+        save();
+        return entry;
+    }
+
+    /**
+     * Returns the signed manifest kept with the entry for {@code version}, or null.
+     */
+    @Nullable
+    public synchronized String signedManifest(String version) {
+        File signature = signatureFile(version);
+        if (!index().containsKey(version) || !signature.isFile()) {
+            return null;
+        }
+        StringBuilder content = new StringBuilder();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(signature), StandardCharsets.UTF_8))) {
+            char[] buffer = new char[4096];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                content.append(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            Tracing.d(TAG, "artifact signature unreadable: %s", e.getMessage());
+            return null;
+        }
+        return content.toString();
+    }
+
+    /**
+     * Deletes the entry for {@code version} and its file.
+     */
+    public synchronized void remove(String version) {
+        Entry entry = index().remove(version);
+        if (entry != null) {
+            delete(entry.file);
+            signatureFile(version).delete();
+            save();
+        }
+    }
+
+    /**
+     * Drops entries whose file is gone or changed size, the entry of the installed version
+     * and every file in the directory the index does not reference. Returns the deleted files.
+     */
+    public synchronized List<File> sweep(@Nullable String installedVersion) {
+        List<File> deleted = new ArrayList<>();
+        Map<String, Entry> index = index();
+        Set<File> referenced = new HashSet<>();
+        for (Entry entry : new ArrayList<>(index.values())) {
+            boolean installed = entry.version.equals(installedVersion);
+            if (installed || !entry.isIntact()) {
+                index.remove(entry.version);
+                if (delete(entry.file)) {
+                    deleted.add(entry.file);
+                }
+            } else {
+                referenced.add(entry.file);
+                referenced.add(signatureFile(entry.version).getAbsoluteFile());
+            }
+        }
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                File absolute = file.getAbsoluteFile();
+                String name = file.getName();
+                if (name.equals(INDEX_NAME) || referenced.contains(absolute)) {
+                    continue;
+                }
+                if (delete(absolute)) {
+                    deleted.add(absolute);
+                }
+            }
+        }
+        evict(null);
+        save();
+        return deleted;
+    }
+
+    /**
+     * Deletes every entry and file that is not in use.
+     */
+    public synchronized void clear() {
+        index().clear();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                delete(file.getAbsoluteFile());
+            }
+        }
+        save();
+    }
+
+    public synchronized long totalBytes() {
+        long total = 0;
+        for (Entry entry : index().values()) {
+            total += entry.size;
+        }
+        return total;
+    }
+
+    public synchronized List<Entry> entries() {
+        return new ArrayList<>(index().values());
+    }
+
+    private void evict(@Nullable String keepVersion) {
+        Map<String, Entry> index = index();
+        List<Entry> candidates = new ArrayList<>(index.values());
+        Collections.sort(candidates, (a, b) -> Long.compare(a.lastUsedAt, b.lastUsedAt));
+        long total = totalBytes();
+        for (Entry entry : candidates) {
+            if (total <= budgetBytes) {
+                break;
+            }
+            if (entry.version.equals(keepVersion) || inUse.contains(entry.file)) {
+                continue;
+            }
+            index.remove(entry.version);
+            delete(entry.file);
+            signatureFile(entry.version).delete();
+            total -= entry.size;
+            Tracing.d(TAG, "evicted cached update %s", entry.version);
+        }
+    }
+
+    private File signatureFile(String version) {
+        // The version comes from the caller, it must not name a file outside the directory.
+        return new File(dir, version.replaceAll("[^A-Za-z0-9._-]", "_") + SIGNATURE_SUFFIX);
+    }
+
+    private boolean writeSignature(File signature, String signedManifest) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return false;
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(signature), StandardCharsets.UTF_8)) {
+            writer.write(signedManifest);
+            return true;
+        } catch (IOException e) {
+            Tracing.d(TAG, "artifact signature not written: %s", e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean delete(File file) {
+        if (inUse.contains(file.getAbsoluteFile())) {
+            return false;
+        }
+        return file.delete();
+    }
+
+    private long nextUseTime() {
+        // Strictly increasing, entries touched within the same millisecond keep their order.
+        lastUsedAt = Math.max(System.currentTimeMillis(), lastUsedAt + 1);
+        return lastUsedAt;
+    }
+
+    private Map<String, Entry> index() {
+        if (entries != null) {
+            return entries;
+        }
+        entries = new LinkedHashMap<>();
+        File file = new File(dir, INDEX_NAME);
+        if (!file.isFile()) {
+            return entries;
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", 5);
+                if (fields.length != 5) {
+                    continue;
+                }
+                try {
+                    Entry entry = new Entry(fields[0], fields[1], new File(fields[4]), Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+                    entries.put(entry.version, entry);
+                    lastUsedAt = Math.max(lastUsedAt, entry.lastUsedAt);
+                } catch (NumberFormatException e) {
+                    // Skip the damaged line, the sweep removes its file.
+                }
+            }
+        } catch (IOException e) {
+            Tracing.d(TAG, "artifact cache index unreadable: %s", e.getMessage());
+        }
+        return entries;
+    }
+
+    private void save() {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File temp = new File(dir, INDEX_TEMP_NAME);
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(temp), StandardCharsets.UTF_8)) {
+            for (Entry entry : index().values()) {
+                writer.write(entry.version + "\t" + entry.digest + "\t" + entry.size + "\t" + entry.lastUsedAt + "\t" + entry.file.getAbsolutePath() + "\n");
+            }
+        } catch (IOException e) {
+            Tracing.d(TAG, "artifact cache index not written: %s", e.getMessage());
+            return;
+        }
+        if (!temp.renameTo(new File(dir, INDEX_NAME))) {
+            temp.delete();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package so.onekey.app.wallet;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Hashing and signed manifest helpers shared by single and batch verification.
+ * <p>
+ * Batch verification fetches and PGP-verifies one SHA256SUMS manifest, then hashes every file
+ * concurrently on a pool sized to the number of cores.
+ */
+public class ArtifactVerifier {
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static ExecutorService hashPool;
+
+    public static class Entry {
+        final File file;
+        final String name;
+
+        public Entry(File file, String name) {
+            this.file = file;
+            this.name = name;
+        }
+    }
+
+    public static class Result {
+        public final Entry entry;
+        public final boolean valid;
+        @Nullable
+        public final String sha256;
+        @Nullable
+        public final String error;
+
+        Result(Entry entry, boolean valid, @Nullable String sha256, @Nullable String error) {
+            this.entry = entry;
+            this.valid = valid;
+            this.sha256 = sha256;
+            this.error = error;
+        }
+    }
+
+    static synchronized ExecutorService hashPool() {
+        if (hashPool == null) {
+            final AtomicInteger count = new AtomicInteger();
+            hashPool = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), runnable -> {
+                Thread thread = new Thread(runnable, "update-hash-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return hashPool;
+    }
+
+    public static String bytesToHex(byte[] bytes) {
+        StringBuilder result = new StringBuilder();
+        for (byte b : bytes) {
+            result.append(Integer.toString((b & 0xff) + 0x100, 16).substring(1));
+        }
+        return result.toString();
+    }
+
+    public static String sha256Hex(File file) throws IOException, NoSuchAlgorithmException {
+        Tracing.beginSection("update.hash");
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            try (InputStream in = new FileInputStream(file)) {
+                byte[] buffer = new byte[HASH_BUFFER_SIZE];
+                int count;
+                while ((count = in.read(buffer)) > 0) {
+                    digest.update(buffer, 0, count);
+                    Tracing.onBytesHashed(count);
+                }
+            }
+            return bytesToHex(digest.digest());
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /**
+     * True when the computed hash equals the signed one and a {@code sha256:} digest recorded
+     * for the file earlier, if any, names the same hash. The recorded digest is only an extra
+     * check, it never stands in for the signed hash.
+     */
+    public static boolean matchesSigned(String calculatedSha256, String signedSha256, @Nullable String recordedDigest) {
+        if (signedSha256.isEmpty() || !calculatedSha256.equals(signedSha256)) {
+            return false;
+        }
+        return recordedDigest == null || !recordedDigest.startsWith("sha256:") || recordedDigest.equals("sha256:" + signedSha256);
+    }
+
+    /**
+     * Downloads the armored {@code .asc} manifest, an empty string means the server sent nothing.
+     */
+    public static String fetchAscFile(OkHttpClient client, String ascFileUrl) throws IOException {
+        Request request = new Request.Builder()
+                .url(ascFileUrl)
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            if (!response.isSuccessful()) throw new IOException("Unexpected code " + response);
+
+            StringBuilder ascFileContent = new StringBuilder();
+            String line;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body().byteStream()))) {
+                while ((line = reader.readLine()) != null) {
+                    ascFileContent.append(line).append("\n");
+                }
+            }
+            return ascFileContent.toString();
+        }
+    }
+
+    /**
+     * Hashes all entries in parallel and compares each one with its line in the verified
+     * manifest. An entry without a name matches a manifest holding a single hash.
+     */
+    public static List<Result> verifyAll(final Map<String, String> manifest, List<Entry> entries) throws InterruptedException {
+        ExecutorService pool = hashPool();
+        List<Future<Result>> futures = new ArrayList<>(entries.size());
+        for (final Entry entry : entries) {
+            futures.add(pool.submit(() -> verifyOne(manifest, entry)));
+        }
+        List<Result> results = new ArrayList<>(entries.size());
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                results.add(new Result(entries.get(i), false, null, cause.getMessage()));
+            }
+        }
+        return results;
+    }
+
+    private static Result verifyOne(Map<String, String> manifest, Entry entry) throws IOException, NoSuchAlgorithmException {
+        String expected = expectedSha256(manifest, entry.name);
+        if (expected == null) {
+            return new Result(entry, false, null, "No manifest entry for " + entry.name);
+        }
+        if (!entry.file.exists()) {
+            return new Result(entry, false, null, "The file does not exist.");
+        }
+        String calculated = sha256Hex(entry.file);
+        boolean valid = calculated.equals(expected);
+        return new Result(entry, valid, calculated, valid ? null : "Installation package possibly compromised");
+    }
+
+    @Nullable
+    private static String expectedSha256(Map<String, String> manifest, @Nullable String name) {
+        if (name != null && !name.isEmpty()) {
+            String expected = manifest.get(name);
+            if (expected == null) {
+                // Entries may be listed with a relative path.
+                for (Map.Entry<String, String> line : manifest.entrySet()) {
+                    if (line.getKey().endsWith("/" + name)) {
+                        return line.getValue();
+                    }
+                }
+            }
+            return expected;
+        }
+        return manifest.size() == 1 ? manifest.values().iterator().next() : null;
+    }
+}
@@ -0,0 +1,159 @@
+package so.onekey.app.wallet;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Token bucket applied by {@link TransferEngine} after every read.
+ * <p>
+ * The ceiling comes from a {@link Policy} and is re-evaluated on each read, so a download
+ * slows down as soon as the user comes back to the app and speeds up again once they leave.
+ * The link rate handed to the policy is only measured while nothing is being throttled;
+ * throttled reads are served from socket buffers and would overstate it. So the estimate keeps
+ * following the link while throttled, the throttle is lifted for {@link #PROBE_MS} every
+ * {@link #PROBE_INTERVAL_MS}: the first sample of that window drains the buffers and is
+ * dropped, the next one measures the link.
+ */
+public class BandwidthLimiter {
+    private static final long MIN_BURST_BYTES = 64 * 1024;
+    private static final long SAMPLE_MS = 500;
+    private static final long PROBE_INTERVAL_MS = 30 * 1000;
+    // Room for one dropped and one full sample window.
+    private static final long PROBE_MS = 5 * SAMPLE_MS / 2;
+
+    public interface Policy {
+        /**
+         * @return the allowed bytes per second, 0 for no limit.
+         */
+        long ceiling(long linkBytesPerSecond);
+    }
+
+    private final Policy policy;
+    private final UpdaterClock clock;
+    private double tokens;
+    private long refilledAt = -1;
+    private long lastAcquireAt = -1;
+    private long sampleBytes;
+    private long sampleMs;
+    private boolean sampleThrottled;
+    private boolean discardSample;
+    // Start of the current throttled stretch or end of the last probe, -1 while unthrottled.
+    private long throttledSince = -1;
+    private long probeUntil = -1;
+    private volatile long linkBytesPerSecond;
+    private volatile long currentCeiling;
+    private volatile long throttledMs;
+
+    public BandwidthLimiter(Policy policy) {
+        this(policy, UpdaterClock.SYSTEM);
+    }
+
+    public BandwidthLimiter(Policy policy, UpdaterClock clock) {
+        this.policy = policy;
+        this.clock = clock;
+    }
+
+    public long getLinkBytesPerSecond() {
+        return linkBytesPerSecond;
+    }
+
+    /**
+     * The ceiling applied to the latest read, 0 when unthrottled.
+     */
+    public long getCurrentCeiling() {
+        return currentCeiling;
+    }
+
+    /**
+     * Total time spent waiting for tokens.
+     */
+    public long getThrottledMs() {
+        return throttledMs;
+    }
+
+    /**
+     * Accounts for {@code byteCount} bytes that were just read and sleeps until they fit.
+     */
+    public void acquire(long byteCount) throws InterruptedIOException {
+        long now = clock.elapsedRealtime();
+        if (lastAcquireAt >= 0) {
+            sample(byteCount, now - lastAcquireAt);
+        }
+        long ceiling = probe(policy.ceiling(linkBytesPerSecond), now);
+        currentCeiling = ceiling;
+        if (ceiling > 0) {
+            long burst = Math.max(MIN_BURST_BYTES, ceiling / 4);
+            if (refilledAt >= 0) {
+                tokens = Math.min(burst, tokens + (now - refilledAt) * ceiling / 1000.0);
+            } else {
+                tokens = burst;
+            }
+            refilledAt = now;
+            tokens -= byteCount;
+            if (tokens < 0) {
+                long waitMs = (long) Math.ceil(-tokens * 1000 / ceiling);
+                try {
+                    clock.sleep(waitMs);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Download interrupted");
+                }
+                throttledMs += waitMs;
+                sampleThrottled = true;
+                now = clock.elapsedRealtime();
+                // Rounding the wait up earned a fraction of a token.
+                tokens += waitMs * ceiling / 1000.0;
+                refilledAt = now;
+            }
+        } else {
+            refilledAt = -1;
+        }
+        // Time asleep is not time on the network.
+        lastAcquireAt = now;
+    }
+
+    /**
+     * Returns {@code ceiling}, or 0 while a probe lifts it to measure the link.
+     */
+    private long probe(long ceiling, long now) {
+        if (ceiling <= 0) {
+            throttledSince = -1;
+            probeUntil = -1;
+            return ceiling;
+        }
+        if (probeUntil >= 0) {
+            if (now < probeUntil) {
+                return 0;
+            }
+            probeUntil = -1;
+            throttledSince = now;
+        } else if (throttledSince < 0) {
+            throttledSince = now;
+        } else if (now - throttledSince >= PROBE_INTERVAL_MS) {
+            probeUntil = now + PROBE_MS;
+            sampleBytes = 0;
+            sampleMs = 0;
+            sampleThrottled = false;
+            discardSample = true;
+            return 0;
+        }
+        return ceiling;
+    }
+
+    private void sample(long byteCount, long elapsedMs) {
+        sampleBytes += byteCount;
+        sampleMs += elapsedMs;
+        if (sampleMs < SAMPLE_MS) {
+            return;
+        }
+        if (discardSample) {
+            discardSample = false;
+        } else if (!sampleThrottled) {
+            long rate = sampleBytes * 1000 / sampleMs;
+            long previous = linkBytesPerSecond;
+            linkBytesPerSecond = previous == 0 ? rate : (previous + rate) / 2;
+        }
+        sampleBytes = 0;
+        sampleMs = 0;
+        sampleThrottled = false;
+    }
+}
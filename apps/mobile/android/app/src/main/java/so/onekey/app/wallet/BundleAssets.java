@@ -0,0 +1,70 @@
+package so.onekey.app.wallet;
+
+import android.content.res.AssetManager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import okio.Okio;
+
+/**
+ * Asset names of the main bundle and the split bundle segments, shared by {@link BundleModule}
+ * and {@link BundlePrefetcher}.
+ */
+final class BundleAssets {
+    // Default `bundleAssetName` of the React Native Gradle plugin.
+    static final String MAIN_BUNDLE = "index.android.bundle";
+    static final String SEGMENT_DIR = "custom/";
+    // Written by the compileReleaseCustomBundlesToHermes task in app/build.gradle.
+    private static final String HERMES_MANIFEST = SEGMENT_DIR + "hbc-manifest.json";
+
+    private static Map<String, String> precompiledSegments;
+
+    private BundleAssets() {
+    }
+
+    /**
+     * Asset path of the segment {@code hashId}, its Hermes bytecode when it was precompiled.
+     */
+    static String segment(AssetManager assets, String hashId) {
+        String bytecode = getPrecompiledSegments(assets).get(hashId);
+        return SEGMENT_DIR + (bytecode != null ? bytecode : hashId + ".bundle");
+    }
+
+    static JSONObject readJson(AssetManager assets, String name) throws IOException, JSONException {
+        try (InputStream in = assets.open(name)) {
+            return new JSONObject(Okio.buffer(Okio.source(in)).readUtf8());
+        }
+    }
+
+    /**
+     * Segment hash -> Hermes bytecode asset, empty when Hermes is off or nothing was precompiled.
+     */
+    private static synchronized Map<String, String> getPrecompiledSegments(AssetManager assets) {
+        if (precompiledSegments != null) {
+            return precompiledSegments;
+        }
+        Map<String, String> segments = new HashMap<>();
+        if (BuildConfig.IS_HERMES_ENABLED) {
+            try {
+                JSONObject manifest = readJson(assets, HERMES_MANIFEST);
+                Iterator<String> keys = manifest.keys();
+                while (keys.hasNext()) {
+                    String hashId = keys.next();
+                    segments.put(hashId, manifest.getJSONObject(hashId).getString("bytecode"));
+                }
+            } catch (IOException | JSONException e) {
+                Tracing.d("Bundle", "no precompiled segments: %s", e.getMessage());
+            }
+        }
+        precompiledSegments = Collections.unmodifiableMap(segments);
+        return precompiledSegments;
+    }
+}
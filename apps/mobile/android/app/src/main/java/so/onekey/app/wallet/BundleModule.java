@@ -3,19 +3,25 @@ package so.onekey.app.wallet;
 import androidx.annotation.NonNull;
 
 import com.facebook.react.ReactNativeHost;
-import com.facebook.react.bridge.NativeModule;
+import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.ReactApplicationContext;
 import com.facebook.react.bridge.ReactContext;
-import com.facebook.react.bridge.ReactContextBaseJavaModule;
 import com.facebook.react.bridge.ReactMethod;
-import java.util.Map;
-import java.util.HashMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
 
-public class BundleModule extends ReactContextBaseJavaModule {
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+public class BundleModule extends BundleModuleSpec {
+    public static final String NAME = "Bundle";
 
     ReactNativeHost reactNativeHost;
     ReactContext reactContext;
 
+    private final Set<String> loadedSegments = Collections.synchronizedSet(new LinkedHashSet<>());
+
     BundleModule(ReactApplicationContext context, ReactNativeHost reactNativeHost) {
         super(context);
         this.reactNativeHost = reactNativeHost;
@@ -24,19 +30,55 @@ public class BundleModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void executeSourceCode(String hashId) {
-        this.reactNativeHost.getReactInstanceManager()
-                .getCurrentReactContext()
-                .getCatalystInstance()
-                .loadScriptFromAssets(
-                        this.reactContext.getAssets(),
-                        "assets://custom/" + hashId + ".bundle",
-                        false
-                );
+        Tracing.beginSection("bundle.load");
+        try {
+            this.reactNativeHost.getReactInstanceManager()
+                    .getCurrentReactContext()
+                    .getCatalystInstance()
+                    .loadScriptFromAssets(
+                            this.reactContext.getAssets(),
+                            "assets://" + BundleAssets.segment(this.reactContext.getAssets(), hashId),
+                            false
+                    );
+        } finally {
+            Tracing.endSection();
+        }
+        loadedSegments.add(hashId);
+        Tracing.onBundleLoaded();
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableArray getLoadedSegments() {
+        WritableArray segments = Arguments.createArray();
+        synchronized (loadedSegments) {
+            for (String hashId : loadedSegments) {
+                segments.pushString(hashId);
+            }
+        }
+        return segments;
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public boolean isSegmentLoaded(String hashId) {
+        return loadedSegments.contains(hashId);
+    }
+
+    /**
+     * Page-cache read-ahead of the startup bundles, see {@link BundlePrefetcher}.
+     */
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap getPrefetchStats() {
+        WritableMap stats = Arguments.createMap();
+        stats.putBoolean("done", BundlePrefetcher.isDone());
+        stats.putInt("bundles", BundlePrefetcher.getPrefetchedBundles());
+        stats.putDouble("bytes", BundlePrefetcher.getPrefetchedBytes());
+        stats.putDouble("durationMs", BundlePrefetcher.getDurationMs());
+        return stats;
     }
 
     @NonNull
     @Override
     public String getName() {
-        return "Bundle";
+        return NAME;
     }
 }
\ No newline at end of file
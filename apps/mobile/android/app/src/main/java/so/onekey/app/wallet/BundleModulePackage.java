@@ -1,18 +1,18 @@
 package so.onekey.app.wallet;
 
-import android.os.Bundle;
+import androidx.annotation.Nullable;
 
 import com.facebook.react.ReactNativeHost;
-import com.facebook.react.ReactPackage;
-        import com.facebook.react.bridge.NativeModule;
-        import com.facebook.react.bridge.ReactApplicationContext;
-        import com.facebook.react.uimanager.ViewManager;
+import com.facebook.react.TurboReactPackage;
+import com.facebook.react.bridge.NativeModule;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
 
-        import java.util.ArrayList;
-        import java.util.Collections;
-        import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
-public class BundleModulePackage implements ReactPackage {
+public class BundleModulePackage extends TurboReactPackage {
     ReactNativeHost mReactNativeHost;
 
     BundleModulePackage(ReactNativeHost mReactNativeHost) {
@@ -20,19 +20,29 @@ public class BundleModulePackage implements ReactPackage {
         this.mReactNativeHost = mReactNativeHost;
     }
 
+    @Nullable
     @Override
-    public List<ViewManager> createViewManagers(ReactApplicationContext reactContext) {
-        return Collections.emptyList();
+    public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+        if (name.equals(BundleModule.NAME)) {
+            return new BundleModule(reactContext, this.mReactNativeHost);
+        }
+        return null;
     }
 
     @Override
-    public List<NativeModule> createNativeModules(
-            ReactApplicationContext reactContext) {
-        List<NativeModule> modules = new ArrayList<>();
-
-        modules.add(new BundleModule(reactContext, this.mReactNativeHost));
-
-        return modules;
+    public ReactModuleInfoProvider getReactModuleInfoProvider() {
+        return () -> {
+            Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+            moduleInfos.put(BundleModule.NAME, new ReactModuleInfo(
+                    BundleModule.NAME,
+                    BundleModule.class.getName(),
+                    false, // canOverrideExistingModule
+                    false, // needsEagerInit
+                    false, // hasConstants
+                    false, // isCxxModule
+                    BuildConfig.IS_NEW_ARCHITECTURE_ENABLED // isTurboModule
+            ));
+            return moduleInfos;
+        };
     }
-
-}
\ No newline at end of file
+}
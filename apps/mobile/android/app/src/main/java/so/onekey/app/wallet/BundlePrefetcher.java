@@ -0,0 +1,129 @@
+package so.onekey.app.wallet;
+
+import android.app.Application;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.os.Process;
+import android.os.SystemClock;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Faults the startup bundles into the page cache on a background thread while the splash
+ * screen shows, so the JS engine does not stall on cold flash reads when it first touches them.
+ * <p>
+ * The main bundle is always prefetched, segments only when listed in the optional
+ * {@code custom/startup-manifest.json} asset, {@code {"segments": ["<hashId>", ...]}}.
+ * Assets are memory-mapped straight out of the APK, which needs them stored uncompressed, see
+ * {@code androidResources.noCompress} in app/build.gradle. Compressed assets are skipped.
+ */
+public final class BundlePrefetcher {
+    private static final String TAG = "Bundle";
+    private static final String STARTUP_MANIFEST = BundleAssets.SEGMENT_DIR + "startup-manifest.json";
+
+    private static volatile boolean done;
+    private static volatile int prefetchedBundles;
+    private static volatile long prefetchedBytes;
+    private static volatile long durationMs;
+
+    private BundlePrefetcher() {
+    }
+
+    /**
+     * Call first in {@code Application.onCreate()} of the UI process, the prefetch starts with
+     * the first activity.
+     */
+    public static void start(Application application) {
+        final AssetManager assets = application.getAssets();
+        ReactPrewarmer.onFirstActivity(application, () -> {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                prefetch(assets);
+            }, "bundle-prefetch");
+            thread.start();
+        });
+    }
+
+    public static boolean isDone() {
+        return done;
+    }
+
+    public static int getPrefetchedBundles() {
+        return prefetchedBundles;
+    }
+
+    public static long getPrefetchedBytes() {
+        return prefetchedBytes;
+    }
+
+    public static long getDurationMs() {
+        return durationMs;
+    }
+
+    private static void prefetch(AssetManager assets) {
+        Tracing.beginSection("bundle.prefetch");
+        long startedAt = SystemClock.uptimeMillis();
+        try {
+            for (String name : startupAssets(assets)) {
+                long bytes = load(assets, name);
+                if (bytes > 0) {
+                    prefetchedBundles++;
+                    prefetchedBytes += bytes;
+                    Tracing.setCounter(Tracing.COUNTER_PREFETCH_BYTES, prefetchedBytes);
+                }
+            }
+        } finally {
+            durationMs = SystemClock.uptimeMillis() - startedAt;
+            done = true;
+            Tracing.endSection();
+        }
+        if (Tracing.LOGGABLE) {
+            Tracing.d(TAG, "prefetched %s bundles, %s bytes in %s ms", prefetchedBundles, prefetchedBytes, durationMs);
+        }
+    }
+
+    private static List<String> startupAssets(AssetManager assets) {
+        List<String> names = new ArrayList<>();
+        names.add(BundleAssets.MAIN_BUNDLE);
+        try {
+            JSONArray segments = BundleAssets.readJson(assets, STARTUP_MANIFEST).getJSONArray("segments");
+            for (int i = 0; i < segments.length(); i++) {
+                names.add(BundleAssets.segment(assets, segments.getString(i)));
+            }
+        } catch (FileNotFoundException e) {
+            // No startup segments.
+        } catch (IOException | JSONException e) {
+            Tracing.d(TAG, "startup manifest unreadable: %s", e.getMessage());
+        }
+        return names;
+    }
+
+    /**
+     * Maps the asset's range of the APK and touches every page. Returns the bytes loaded, 0
+     * when the asset is missing or compressed.
+     */
+    private static long load(AssetManager assets, String name) {
+        try (AssetFileDescriptor fd = assets.openFd(name);
+             FileInputStream in = fd.createInputStream();
+             FileChannel channel = in.getChannel()) {
+            long length = fd.getLength();
+            channel.map(FileChannel.MapMode.READ_ONLY, fd.getStartOffset(), length).load();
+            return length;
+        } catch (FileNotFoundException e) {
+            // Compressed, or loaded from the dev server.
+            Tracing.d(TAG, "not prefetched: %s", name);
+        } catch (IOException e) {
+            Tracing.d(TAG, "prefetch of %s failed: %s", name, e.getMessage());
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,137 @@
+package so.onekey.app.wallet;
+
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * File an update is downloaded into.
+ * <p>
+ * The full extent is reserved with {@code posix_fallocate} as soon as the size is known, so
+ * flash writes stay contiguous and a full disk is reported before any byte is transferred.
+ * Writes go through a positioned {@link FileChannel}, which lets a range continuation write
+ * exactly after the last byte that was accounted for.
+ */
+public class DownloadTarget implements UpdateDownloader.Output {
+    private static final String TAG = "UPDATE APP";
+    // Signature temp file, package archive parsing and installer bookkeeping.
+    private static final long VERIFICATION_HEADROOM_BYTES = 8 * 1024 * 1024;
+
+    public static class InsufficientSpaceException extends IOException {
+        InsufficientSpaceException(long required, long usable) {
+            super("Not enough storage space to download the update, " + required + " bytes required, " + usable + " available.");
+        }
+    }
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+
+    private DownloadTarget(File file) throws IOException {
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "rw");
+        this.channel = randomAccessFile.getChannel();
+    }
+
+    /**
+     * Checks the declared length against the usable space of the target's volume.
+     * An unknown length (-1) always passes.
+     */
+    public static void preflight(File file, long contentLength) throws InsufficientSpaceException {
+        if (contentLength < 0) {
+            return;
+        }
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir == null) {
+            return;
+        }
+        long usable = dir.getUsableSpace();
+        long existing = file.exists() ? file.length() : 0;
+        long required = contentLength + VERIFICATION_HEADROOM_BYTES - existing;
+        if (usable > 0 && required > usable) {
+            throw new InsufficientSpaceException(required, usable);
+        }
+    }
+
+    public static UpdateDownloader.Destination destination(final File file) {
+        return new UpdateDownloader.Destination() {
+            @Override
+            public UpdateDownloader.Output create(long contentLength) throws IOException {
+                return DownloadTarget.create(file, contentLength);
+            }
+
+            @Override
+            public UpdateDownloader.Output resume() throws IOException {
+                return DownloadTarget.resume(file);
+            }
+        };
+    }
+
+    /**
+     * Truncates the file and reserves {@code contentLength} bytes for a fresh download.
+     */
+    public static DownloadTarget create(File file, long contentLength) throws IOException {
+        preflight(file, contentLength);
+        DownloadTarget target = new DownloadTarget(file);
+        try {
+            target.channel.truncate(0);
+            if (contentLength > 0) {
+                target.preallocate(contentLength);
+            }
+        } catch (IOException e) {
+            target.close();
+            throw e;
+        }
+        return target;
+    }
+
+    /**
+     * Reopens a partially downloaded file to continue writing at {@code offset}.
+     */
+    public static DownloadTarget resume(File file) throws IOException {
+        return new DownloadTarget(file);
+    }
+
+    private void preallocate(long length) throws IOException {
+        try {
+            Os.posix_fallocate(randomAccessFile.getFD(), 0, length);
+        } catch (ErrnoException e) {
+            if (e.errno == OsConstants.ENOSPC) {
+                throw new InsufficientSpaceException(length, file.getUsableSpace());
+            }
+            // Filesystems without fallocate support, the extent is then allocated on write.
+            Tracing.d(TAG, "posix_fallocate unsupported: %s", e.getMessage());
+        }
+    }
+
+    @Override
+    public BufferedSink sink(long offset) throws IOException {
+        channel.position(offset);
+        return Okio.buffer(Okio.sink(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Drops whatever part of the reserved extent was not written.
+     */
+    @Override
+    public void finish(long length) throws IOException {
+        if (channel.size() > length) {
+            channel.truncate(length);
+        }
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+}
@@ -0,0 +1,45 @@
+package so.onekey.app.wallet;
+
+/**
+ * Leaves room for the wallet's own traffic while the user is active in the app.
+ * <p>
+ * While the user interacts with the app, a "normal" download takes at most half of the
+ * measured link rate and a "low" one a quarter, both also capped by {@code maxBytesPerSecond}.
+ * In the background, or after {@link #USER_IDLE_MS} without interaction, downloads run at
+ * full speed. "high" is never throttled.
+ */
+public class ForegroundTransferPolicy implements BandwidthLimiter.Policy {
+    public static final String PRIORITY_LOW = "low";
+    public static final String PRIORITY_NORMAL = "normal";
+    public static final String PRIORITY_HIGH = "high";
+
+    private static final long USER_IDLE_MS = 30 * 1000;
+    private static final long MIN_CEILING_BYTES_PER_SECOND = 16 * 1024;
+
+    private final double linkShare;
+    private final long maxBytesPerSecond;
+
+    public ForegroundTransferPolicy(String priority, long maxBytesPerSecond) {
+        if (PRIORITY_HIGH.equals(priority)) {
+            this.linkShare = 1;
+            this.maxBytesPerSecond = 0;
+        } else {
+            this.linkShare = PRIORITY_LOW.equals(priority) ? 0.25 : 0.5;
+            this.maxBytesPerSecond = maxBytesPerSecond;
+        }
+    }
+
+    @Override
+    public long ceiling(long linkBytesPerSecond) {
+        if (linkShare >= 1 || !UserPresence.isActive(USER_IDLE_MS)) {
+            return 0;
+        }
+        long ceiling = maxBytesPerSecond;
+        // Unknown until the first unthrottled sample, then a share of it.
+        if (linkBytesPerSecond > 0) {
+            long shared = (long) (linkBytesPerSecond * linkShare);
+            ceiling = ceiling > 0 ? Math.min(ceiling, shared) : shared;
+        }
+        return ceiling > 0 ? Math.max(ceiling, MIN_CEILING_BYTES_PER_SECOND) : 0;
+    }
+}
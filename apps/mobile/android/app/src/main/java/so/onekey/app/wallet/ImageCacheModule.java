@@ -0,0 +1,24 @@
+package so.onekey.app.wallet;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactMethod;
+import com.facebook.react.bridge.WritableMap;
+
+public class ImageCacheModule extends ImageCacheModuleSpec {
+    public static final String NAME = "ImageCache";
+
+    public ImageCacheModule(ReactApplicationContext context) {
+        super(context);
+        ImageMemory.attach(context);
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @ReactMethod(isBlockingSynchronousMethod = true)
+    public WritableMap getImageCacheStats() {
+        return ImageMemory.statsMap();
+    }
+}
@@ -0,0 +1,40 @@
+package so.onekey.app.wallet;
+
+import androidx.annotation.Nullable;
+
+import com.facebook.react.TurboReactPackage;
+import com.facebook.react.bridge.NativeModule;
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.module.model.ReactModuleInfo;
+import com.facebook.react.module.model.ReactModuleInfoProvider;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class ImageCacheModulePackage extends TurboReactPackage {
+    @Nullable
+    @Override
+    public NativeModule getModule(String name, ReactApplicationContext reactContext) {
+        if (name.equals(ImageCacheModule.NAME)) {
+            return new ImageCacheModule(reactContext);
+        }
+        return null;
+    }
+
+    @Override
+    public ReactModuleInfoProvider getReactModuleInfoProvider() {
+        return () -> {
+            Map<String, ReactModuleInfo> moduleInfos = new HashMap<>();
+            moduleInfos.put(ImageCacheModule.NAME, new ReactModuleInfo(
+                    ImageCacheModule.NAME,
+                    ImageCacheModule.class.getName(),
+                    false, // canOverrideExistingModule
+                    true, // needsEagerInit, forwards cookies to image requests
+                    false, // hasConstants
+                    false, // isCxxModule
+                    BuildConfig.IS_NEW_ARCHITECTURE_ENABLED // isTurboModule
+            ));
+            return moduleInfos;
+        };
+    }
+}
@@ -0,0 +1,251 @@
+package so.onekey.app.wallet;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.facebook.cache.common.CacheKey;
+import com.facebook.common.memory.MemoryTrimType;
+import com.facebook.common.memory.MemoryTrimmable;
+import com.facebook.common.memory.MemoryTrimmableRegistry;
+import com.facebook.drawee.backends.pipeline.Fresco;
+import com.facebook.imagepipeline.backends.okhttp3.OkHttpImagePipelineConfigFactory;
+import com.facebook.imagepipeline.cache.ImageCacheStatsTracker;
+import com.facebook.imagepipeline.cache.MemoryCache;
+import com.facebook.imagepipeline.cache.MemoryCacheParams;
+import com.facebook.imagepipeline.core.ImagePipelineConfig;
+import com.facebook.imagepipeline.listener.RequestListener;
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.fresco.SystraceRequestListener;
+import com.facebook.react.modules.network.CookieJarContainer;
+import com.facebook.react.modules.network.ForwardingCookieHandler;
+import com.facebook.react.modules.network.OkHttpClientProvider;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.JavaNetCookieJar;
+import okhttp3.OkHttpClient;
+
+/**
+ * Fresco pipeline sizing and memory pressure handling.
+ * <p>
+ * Fresco defaults to a quarter of the heap class for decoded bitmaps, which on 3-4 GB devices
+ * with a large heap lets NFT grids hold well over 100 MB of pixels. The limits here follow the
+ * device's total RAM instead, and {@link #onTrimMemory(int)} shrinks or drops the caches as the
+ * system asks for memory back.
+ */
+public final class ImageMemory {
+    private static final String TAG = "IMAGE MEMORY";
+    private static final int MB = 1024 * 1024;
+    private static final long GB = 1024L * MB;
+    private static final int MAX_CACHE_ENTRIES = 256;
+    private static final int MAX_EVICTION_QUEUE_ENTRIES = Integer.MAX_VALUE;
+    private static final long PARAMS_CHECK_INTERVAL_MS = TimeUnit.MINUTES.toMillis(5);
+    // MemoryInfo.totalMem excludes the memory the kernel and carve-outs reserve, a phone sold
+    // with 4 GB reports about 3.6-3.8 GB and one with 6 GB about 5.5 GB. Each tier's bound is
+    // its advertised size, so the reported size always lands below it.
+    private static final long LOW_TIER_TOTAL_MEM = 4 * GB;
+    private static final long MID_TIER_TOTAL_MEM = 6 * GB;
+
+    private static final Set<MemoryTrimmable> trimmables = new CopyOnWriteArraySet<>();
+    private static final MemoryTrimmableRegistry trimmableRegistry = new MemoryTrimmableRegistry() {
+        @Override
+        public void registerMemoryTrimmable(MemoryTrimmable trimmable) {
+            trimmables.add(trimmable);
+        }
+
+        @Override
+        public void unregisterMemoryTrimmable(MemoryTrimmable trimmable) {
+            trimmables.remove(trimmable);
+        }
+    };
+
+    private static final AtomicLong bitmapHits = new AtomicLong();
+    private static final AtomicLong bitmapMisses = new AtomicLong();
+    private static final AtomicLong encodedHits = new AtomicLong();
+    private static final AtomicLong encodedMisses = new AtomicLong();
+    private static final AtomicLong diskHits = new AtomicLong();
+    private static final AtomicLong diskMisses = new AtomicLong();
+    private static final AtomicLong trims = new AtomicLong();
+    private static volatile int bitmapCacheBytes;
+    private static volatile int encodedCacheBytes;
+    private static OkHttpClient client;
+
+    private static final ImageCacheStatsTracker statsTracker = new ImageCacheStatsTracker() {
+        @Override
+        public void onBitmapCachePut(CacheKey cacheKey) {
+        }
+
+        @Override
+        public void onBitmapCacheHit(CacheKey cacheKey) {
+            bitmapHits.incrementAndGet();
+        }
+
+        @Override
+        public void onBitmapCacheMiss(CacheKey cacheKey) {
+            bitmapMisses.incrementAndGet();
+        }
+
+        @Override
+        public void onMemoryCachePut(CacheKey cacheKey) {
+        }
+
+        @Override
+        public void onMemoryCacheHit(CacheKey cacheKey) {
+            encodedHits.incrementAndGet();
+        }
+
+        @Override
+        public void onMemoryCacheMiss(CacheKey cacheKey) {
+            encodedMisses.incrementAndGet();
+        }
+
+        @Override
+        public void onStagingAreaHit(CacheKey cacheKey) {
+            encodedHits.incrementAndGet();
+        }
+
+        @Override
+        public void onStagingAreaMiss(CacheKey cacheKey) {
+        }
+
+        @Override
+        public void onDiskCacheHit(CacheKey cacheKey) {
+            diskHits.incrementAndGet();
+        }
+
+        @Override
+        public void onDiskCacheMiss(CacheKey cacheKey) {
+            diskMisses.incrementAndGet();
+        }
+
+        @Override
+        public void onDiskCacheGetFail(CacheKey cacheKey) {
+            diskMisses.incrementAndGet();
+        }
+
+        @Override
+        public void onDiskCachePut(CacheKey cacheKey) {
+        }
+
+        @Override
+        public void registerBitmapMemoryCache(MemoryCache<?, ?> bitmapMemoryCache) {
+        }
+
+        @Override
+        public void registerEncodedMemoryCache(MemoryCache<?, ?> encodedMemoryCache) {
+        }
+    };
+
+    private ImageMemory() {
+    }
+
+    /**
+     * Mirrors React Native's default pipeline with bounded memory caches. Passed to
+     * {@code FrescoModule} through {@code MainPackageConfig}, which initializes Fresco with it.
+     */
+    public static ImagePipelineConfig buildConfig(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        ActivityManager.MemoryInfo memoryInfo = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(memoryInfo);
+        long heapBytes = (long) activityManager.getMemoryClass() * MB;
+
+        int bitmapLimit;
+        int encodedLimit;
+        if (activityManager.isLowRamDevice() || memoryInfo.totalMem <= LOW_TIER_TOTAL_MEM) {
+            bitmapLimit = (int) Math.min(heapBytes / 8, 24 * MB);
+            encodedLimit = 4 * MB;
+        } else if (memoryInfo.totalMem <= MID_TIER_TOTAL_MEM) {
+            bitmapLimit = (int) Math.min(heapBytes / 6, 48 * MB);
+            encodedLimit = 8 * MB;
+        } else {
+            bitmapLimit = (int) Math.min(heapBytes / 4, 96 * MB);
+            encodedLimit = 16 * MB;
+        }
+        bitmapCacheBytes = bitmapLimit;
+        encodedCacheBytes = encodedLimit;
+        if (Tracing.LOGGABLE) {
+            Tracing.d(TAG, "bitmap cache %s bytes, encoded cache %s bytes", bitmapLimit, encodedLimit);
+        }
+
+        final MemoryCacheParams bitmapParams = new MemoryCacheParams(
+                bitmapLimit, MAX_CACHE_ENTRIES, bitmapLimit / 4, MAX_EVICTION_QUEUE_ENTRIES, bitmapLimit / 4, PARAMS_CHECK_INTERVAL_MS);
+        final MemoryCacheParams encodedParams = new MemoryCacheParams(
+                encodedLimit, MAX_CACHE_ENTRIES, encodedLimit, MAX_EVICTION_QUEUE_ENTRIES, encodedLimit / 4, PARAMS_CHECK_INTERVAL_MS);
+
+        client = OkHttpClientProvider.createClient();
+        return OkHttpImagePipelineConfigFactory.newBuilder(context.getApplicationContext(), client)
+                .setDownsampleEnabled(false)
+                .setRequestListeners(Collections.<RequestListener>singleton(new SystraceRequestListener()))
+                .setBitmapMemoryCacheParamsSupplier(() -> bitmapParams)
+                .setEncodedMemoryCacheParamsSupplier(() -> encodedParams)
+                .setMemoryTrimmableRegistry(trimmableRegistry)
+                .setImageCacheStatsTracker(statsTracker)
+                .build();
+    }
+
+    /**
+     * Forwards the WebView/network cookies to image requests, like React Native's pipeline,
+     * once a React context exists.
+     */
+    public static void attach(ReactContext context) {
+        if (client != null && client.cookieJar() instanceof CookieJarContainer) {
+            ((CookieJarContainer) client.cookieJar()).setCookieJar(new JavaNetCookieJar(new ForwardingCookieHandler(context)));
+        }
+    }
+
+    private static void trim(MemoryTrimType trimType) {
+        for (MemoryTrimmable trimmable : trimmables) {
+            trimmable.trim(trimType);
+        }
+    }
+
+    /**
+     * Called from {@link android.app.Application#onTrimMemory(int)}. The JS heap is handled by
+     * React Native's own {@code MemoryPressureRouter}.
+     */
+    public static void onTrimMemory(int level) {
+        if (!Fresco.hasBeenInitialized()) {
+            return;
+        }
+        trims.incrementAndGet();
+        if (Tracing.LOGGABLE) {
+            Tracing.d(TAG, "onTrimMemory %d", level);
+        }
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            // In the background, nothing on screen needs the decoded bitmaps.
+            Fresco.getImagePipeline().clearMemoryCaches();
+            SQLiteDatabase.releaseMemory();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trim(MemoryTrimType.OnSystemMemoryCriticallyLowWhileAppInForeground);
+            SQLiteDatabase.releaseMemory();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE) {
+            trim(MemoryTrimType.OnSystemLowMemoryWhileAppInForeground);
+        }
+    }
+
+    public static void onLowMemory() {
+        onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    public static WritableMap statsMap() {
+        WritableMap map = Arguments.createMap();
+        map.putDouble("bitmapCacheHits", bitmapHits.get());
+        map.putDouble("bitmapCacheMisses", bitmapMisses.get());
+        map.putDouble("encodedCacheHits", encodedHits.get());
+        map.putDouble("encodedCacheMisses", encodedMisses.get());
+        map.putDouble("diskCacheHits", diskHits.get());
+        map.putDouble("diskCacheMisses", diskMisses.get());
+        map.putDouble("bitmapCacheLimitBytes", bitmapCacheBytes);
+        map.putDouble("encodedCacheLimitBytes", encodedCacheBytes);
+        map.putDouble("trims", trims.get());
+        return map;
+    }
+}
@@ -0,0 +1,229 @@
+package so.onekey.app.wallet;
+
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInstaller;
+import android.os.Build;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.Set;
+
+import okio.BufferedSink;
+import okio.Okio;
+
+/**
+ * Streams an update straight into a {@link PackageInstaller} session.
+ * <p>
+ * Bytes are hashed while they are written, so the APK is never stored in app storage, never
+ * read back for verification and never copied again by the installer. The session may only be
+ * committed once {@link #sha256Hex()} matched the signed manifest, every other outcome has to
+ * end with {@link #abandon()}. The package installer itself rejects an APK with another
+ * package name or signing certificate.
+ */
+public class InstallSession implements UpdateDownloader.Destination {
+    private static final String TAG = "UPDATE APP";
+    private static final String ENTRY_NAME = "base.apk";
+    private static final String ACTION_INSTALL_STATUS = ".UPDATE_INSTALL_STATUS";
+    // Ids of the sessions created here and not committed yet, they survive process death.
+    private static final String PREFS_NAME = "onekey_install_sessions";
+    private static final String KEY_OPEN_SESSIONS = "open";
+
+    public interface StatusListener {
+        /**
+         * Final status of a commit, {@link PackageInstaller#STATUS_SUCCESS} or a failure, also
+         * when the user declined.
+         */
+        void onStatus(int status, @Nullable String message);
+    }
+
+    private final Context context;
+    private final PackageInstaller installer;
+    private final MessageDigest digest;
+    @Nullable
+    private PackageInstaller.Session session;
+    private int sessionId = -1;
+    private long contentLength = -1;
+    @Nullable
+    private String sha256;
+
+    public InstallSession(Context context) throws NoSuchAlgorithmException {
+        this.context = context.getApplicationContext();
+        this.installer = context.getPackageManager().getPackageInstaller();
+        this.digest = MessageDigest.getInstance("SHA-256");
+    }
+
+    /**
+     * Abandons the uncommitted sessions an earlier download of this updater left behind, they
+     * survive process death. Sessions it did not create, or already committed, are left alone.
+     */
+    public static synchronized void abandonStale(Context context) {
+        SharedPreferences prefs = prefs(context);
+        Set<String> open = prefs.getStringSet(KEY_OPEN_SESSIONS, null);
+        if (open == null || open.isEmpty()) {
+            return;
+        }
+        PackageInstaller installer = context.getPackageManager().getPackageInstaller();
+        for (PackageInstaller.SessionInfo info : installer.getMySessions()) {
+            if (!open.contains(String.valueOf(info.getSessionId()))) {
+                continue;
+            }
+            try {
+                installer.abandonSession(info.getSessionId());
+            } catch (SecurityException e) {
+                Tracing.d(TAG, "abandonSession: %s", e.getMessage());
+            }
+        }
+        prefs.edit().remove(KEY_OPEN_SESSIONS).commit();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static synchronized void setOpen(Context context, int sessionId, boolean open) {
+        SharedPreferences prefs = prefs(context);
+        Set<String> ids = new HashSet<>(prefs.getStringSet(KEY_OPEN_SESSIONS, new HashSet<>()));
+        if (open ? ids.add(String.valueOf(sessionId)) : ids.remove(String.valueOf(sessionId))) {
+            prefs.edit().putStringSet(KEY_OPEN_SESSIONS, ids).commit();
+        }
+    }
+
+    @Override
+    public synchronized UpdateDownloader.Output create(long contentLength) throws IOException {
+        // A mirror ignoring the range request restarts from zero in a new session.
+        abandon();
+        // Staged sessions live on the same volume as the app's data directory.
+        DownloadTarget.preflight(new File(context.getFilesDir(), ENTRY_NAME), contentLength);
+        PackageInstaller.SessionParams params = new PackageInstaller.SessionParams(PackageInstaller.SessionParams.MODE_FULL_INSTALL);
+        params.setAppPackageName(context.getPackageName());
+        if (contentLength > 0) {
+            params.setSize(contentLength);
+        }
+        sessionId = installer.createSession(params);
+        setOpen(context, sessionId, true);
+        session = installer.openSession(sessionId);
+        this.contentLength = contentLength;
+        digest.reset();
+        sha256 = null;
+        return new SessionOutput(session);
+    }
+
+    @Override
+    public synchronized UpdateDownloader.Output resume() throws IOException {
+        if (session == null) {
+            throw new IOException("No install session to resume.");
+        }
+        return new SessionOutput(session);
+    }
+
+    private class SessionOutput implements UpdateDownloader.Output {
+        private final PackageInstaller.Session session;
+        @Nullable
+        private OutputStream stream;
+
+        SessionOutput(PackageInstaller.Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public BufferedSink sink(long offset) throws IOException {
+            long length = contentLength > 0 ? contentLength - offset : -1;
+            stream = session.openWrite(ENTRY_NAME, offset, length);
+            // Writes are sequential, a range continuation keeps extending the same digest.
+            return Okio.buffer(Okio.sink(new DigestOutputStream(stream, digest)));
+        }
+
+        @Override
+        public void finish(long length) throws IOException {
+            if (stream != null) {
+                session.fsync(stream);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (stream != null) {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * SHA-256 of everything written to the session.
+     */
+    public synchronized String sha256Hex() {
+        if (sha256 == null) {
+            sha256 = ArtifactVerifier.bytesToHex(digest.digest());
+        }
+        return sha256;
+    }
+
+    /**
+     * Hands the session to the package installer, which asks the user to confirm.
+     */
+    public synchronized void commit(final StatusListener listener) {
+        if (session == null) {
+            throw new IllegalStateException("No install session to commit.");
+        }
+        final String action = context.getPackageName() + ACTION_INSTALL_STATUS;
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                int status = intent.getIntExtra(PackageInstaller.EXTRA_STATUS, PackageInstaller.STATUS_FAILURE);
+                if (status == PackageInstaller.STATUS_PENDING_USER_ACTION) {
+                    Intent confirmIntent = intent.getParcelableExtra(Intent.EXTRA_INTENT);
+                    if (confirmIntent != null) {
+                        confirmIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                        context.startActivity(confirmIntent);
+                    }
+                    return;
+                }
+                context.unregisterReceiver(this);
+                String message = intent.getStringExtra(PackageInstaller.EXTRA_STATUS_MESSAGE);
+                if (Tracing.LOGGABLE) {
+                    Tracing.d(TAG, "install session status: %s %s", status, message);
+                }
+                listener.onStatus(status, message);
+            }
+        };
+        IntentFilter filter = new IntentFilter(action);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            context.registerReceiver(receiver, filter, Context.RECEIVER_NOT_EXPORTED);
+        } else {
+            context.registerReceiver(receiver, filter);
+        }
+        Intent statusIntent = new Intent(action).setPackage(context.getPackageName());
+        // The installer fills in the status extras, so the intent has to stay mutable.
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S) {
+            flags |= PendingIntent.FLAG_MUTABLE;
+        }
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, sessionId, statusIntent, flags);
+        // Owned by the package installer from here on.
+        setOpen(context, sessionId, false);
+        session.commit(pendingIntent.getIntentSender());
+        session.close();
+        session = null;
+    }
+
+    public synchronized void abandon() {
+        if (session == null) {
+            return;
+        }
+        session.abandon();
+        session = null;
+        setOpen(context, sessionId, false);
+    }
+}
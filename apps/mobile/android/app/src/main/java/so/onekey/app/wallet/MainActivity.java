@@ -23,6 +23,24 @@ public class MainActivity extends ReactActivity {
     sharedI18nUtilInstance.allowRTL(getApplicationContext(), true);
   }
 
+  @Override
+  protected void onResume() {
+    super.onResume();
+    UserPresence.onResume();
+  }
+
+  @Override
+  protected void onPause() {
+    super.onPause();
+    UserPresence.onPause();
+  }
+
+  @Override
+  public void onUserInteraction() {
+    super.onUserInteraction();
+    UserPresence.onUserInteraction();
+  }
+
   /**
    * Returns the name of the main component registered from JavaScript.
    * This is used to schedule rendering of the component.
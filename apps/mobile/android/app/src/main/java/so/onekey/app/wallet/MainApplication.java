@@ -1,6 +1,7 @@
 package so.onekey.app.wallet;
 
 import android.app.Application;
+import android.os.Build;
 import android.content.res.Configuration;
 import android.database.CursorWindow;
 import androidx.annotation.NonNull;
@@ -14,13 +15,16 @@ import com.facebook.react.config.ReactFeatureFlags;
 import com.facebook.react.defaults.DefaultNewArchitectureEntryPoint;
 import com.facebook.react.defaults.DefaultReactNativeHost;
 import com.facebook.react.flipper.ReactNativeFlipper;
+import com.facebook.react.shell.MainPackageConfig;
 import com.facebook.soloader.SoLoader;
 
 import cn.jiguang.plugins.push.JPushModule;
 import expo.modules.ApplicationLifecycleDispatcher;
 import expo.modules.ReactNativeHostWrapper;
 
+import java.io.FileInputStream;
 import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 public class MainApplication extends Application implements ReactApplication {
@@ -36,11 +40,16 @@ public class MainApplication extends Application implements ReactApplication {
       protected List<ReactPackage> getPackages() {
         @SuppressWarnings("UnnecessaryLocalVariable")
 
-        List<ReactPackage> packages = new PackageList(this).getPackages();
+        // MainReactPackage hands the config to FrescoModule, which initializes the pipeline.
+        MainPackageConfig config = new MainPackageConfig.Builder()
+            .setFrescoConfig(ImageMemory.buildConfig(getApplication()))
+            .build();
+        List<ReactPackage> packages = new PackageList(this, config).getPackages();
         // Packages that cannot be autolinked yet can be added manually here, for example:
         // packages.add(new MyReactNativePackage());
           packages.add(new BundleModulePackage(mReactNativeHost));
           packages.add(new AutoUpdateModulePackage(mReactNativeHost));
+          packages.add(new ImageCacheModulePackage());
         return packages;
       }
 
@@ -78,9 +87,40 @@ public class MainApplication extends Application implements ReactApplication {
     return 2;
   }
 
+  private boolean mUpdaterProcess;
+
+  /**
+   * {@link UpdaterService} runs in its own process, which needs none of React, Fresco or push.
+   */
+  private static boolean isUpdaterProcess() {
+    String processName = null;
+    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+      processName = Application.getProcessName();
+    } else {
+      try (FileInputStream in = new FileInputStream("/proc/self/cmdline")) {
+        byte[] buffer = new byte[256];
+        int length = in.read(buffer);
+        int end = 0;
+        while (end < length && buffer[end] != 0) {
+          end++;
+        }
+        processName = new String(buffer, 0, end, StandardCharsets.UTF_8);
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+    return processName != null && processName.endsWith(":updater");
+  }
+
   @Override
   public void onCreate() {
     super.onCreate();
+    mUpdaterProcess = isUpdaterProcess();
+    if (mUpdaterProcess) {
+      return;
+    }
+    // Reads the startup bundles into the page cache once the first activity is created.
+    BundlePrefetcher.start(this);
     try {
       Field field = CursorWindow.class.getDeclaredField("sCursorWindowSize");
       field.setAccessible(true);
@@ -102,11 +142,28 @@ public class MainApplication extends Application implements ReactApplication {
     }
     ApplicationLifecycleDispatcher.onApplicationCreate(this);
     JPushModule.registerActivityLifecycle(this);
+    // Loads the main bundle while the activity and splash screen inflate.
+    ReactPrewarmer.start(this, getReactNativeHost());
   }
 
   @Override
   public void onConfigurationChanged(@NonNull Configuration newConfig) {
     super.onConfigurationChanged(newConfig);
+    if (mUpdaterProcess) {
+      return;
+    }
     ApplicationLifecycleDispatcher.onConfigurationChanged(this, newConfig);
   }
+
+  @Override
+  public void onTrimMemory(int level) {
+    super.onTrimMemory(level);
+    ImageMemory.onTrimMemory(level);
+  }
+
+  @Override
+  public void onLowMemory() {
+    super.onLowMemory();
+    ImageMemory.onLowMemory();
+  }
 }
@@ -0,0 +1,120 @@
+package so.onekey.app.wallet;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Process;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.facebook.react.ReactInstanceEventListener;
+import com.facebook.react.ReactInstanceManager;
+import com.facebook.react.ReactNativeHost;
+import com.facebook.react.bridge.ReactContext;
+
+/**
+ * Starts creating the React context and loading the main bundle as soon as the first activity
+ * is being created, overlapping JS load with activity inflation and the splash screen.
+ * <p>
+ * {@code ReactRootView} only creates the context itself when none has been started, so the
+ * activity attaches to the warmed instance as soon as it is ready. Disabled with the Gradle
+ * property {@code onekey.prewarmReactInstance=false}, and always with the dev server.
+ */
+public final class ReactPrewarmer {
+    private static final String TAG = "STARTUP";
+
+    private ReactPrewarmer() {
+    }
+
+    /**
+     * Runs {@code action} on the main thread when the first activity of the process is being
+     * created, before its {@code onCreate()} from Android 10. A process started for a push,
+     * broadcast, job or foreground service never gets there and would load the bundle for
+     * nothing, its importance is foreground all the same.
+     */
+    static void onFirstActivity(Application application, Runnable action) {
+        application.registerActivityLifecycleCallbacks(new Application.ActivityLifecycleCallbacks() {
+            private boolean done;
+
+            private void run() {
+                if (!done) {
+                    done = true;
+                    application.unregisterActivityLifecycleCallbacks(this);
+                    action.run();
+                }
+            }
+
+            @Override
+            public void onActivityPreCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+                run();
+            }
+
+            @Override
+            public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+                // Before Android 10 there is no pre-created callback.
+                run();
+            }
+
+            @Override
+            public void onActivityStarted(@NonNull Activity activity) {
+            }
+
+            @Override
+            public void onActivityResumed(@NonNull Activity activity) {
+            }
+
+            @Override
+            public void onActivityPaused(@NonNull Activity activity) {
+            }
+
+            @Override
+            public void onActivityStopped(@NonNull Activity activity) {
+            }
+
+            @Override
+            public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+            }
+
+            @Override
+            public void onActivityDestroyed(@NonNull Activity activity) {
+            }
+        });
+    }
+
+    /**
+     * Call last in {@code Application.onCreate()}, on the main thread, once SoLoader
+     * and the Expo lifecycle are set up.
+     */
+    public static void start(Application application, ReactNativeHost host) {
+        if (!BuildConfig.PREWARM_REACT_INSTANCE || host.getUseDeveloperSupport()) {
+            return;
+        }
+        onFirstActivity(application, () -> prewarm(host));
+    }
+
+    private static void prewarm(ReactNativeHost host) {
+        Tracing.beginSection("startup.prewarm");
+        try {
+            ReactInstanceManager manager = host.getReactInstanceManager();
+            if (manager.hasStartedCreatingInitialContext()) {
+                return;
+            }
+            if (Tracing.LOGGABLE) {
+                final long startedAt = SystemClock.uptimeMillis();
+                manager.addReactInstanceEventListener(new ReactInstanceEventListener() {
+                    @Override
+                    public void onReactContextInitialized(ReactContext context) {
+                        manager.removeReactInstanceEventListener(this);
+                        Tracing.d(TAG, "prewarmed React context ready after %d ms, %d ms since process start",
+                                SystemClock.uptimeMillis() - startedAt, SystemClock.uptimeMillis() - Process.getStartUptimeMillis());
+                    }
+                });
+            }
+            manager.createReactContextInBackground();
+        } finally {
+            Tracing.endSection();
+        }
+    }
+}
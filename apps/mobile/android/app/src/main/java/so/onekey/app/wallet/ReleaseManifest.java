@@ -0,0 +1,155 @@
+package so.onekey.app.wallet;
+
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Signed list of the artifacts published for one release:
+ * <pre>
+ * RELEASE 1
+ * version 5.1.0
+ * &lt;sha256&gt; &lt;size&gt; &lt;flavor&gt; &lt;abis&gt; &lt;densities&gt; &lt;url&gt;
+ * ...
+ * </pre>
+ * {@code abis} and {@code densities} are comma separated, {@code *} when the artifact is not
+ * split by them: a universal APK lists {@code *} or every ABI it carries native code for,
+ * a per-ABI split only its own. Densities are the resource buckets, {@code mdpi} to
+ * {@code xxxhdpi}.
+ */
+public class ReleaseManifest {
+    private static final String HEADER = "RELEASE 1";
+    private static final String ANY = "*";
+
+    public static class Artifact {
+        public final String sha256;
+        public final long size;
+        public final String flavor;
+        // Empty when not split by ABI or density.
+        public final List<String> abis;
+        public final List<String> densities;
+        public final String url;
+
+        Artifact(String sha256, long size, String flavor, List<String> abis, List<String> densities, String url) {
+            this.sha256 = sha256;
+            this.size = size;
+            this.flavor = flavor;
+            this.abis = abis;
+            this.densities = densities;
+            this.url = url;
+        }
+
+        public String getName() {
+            return url.substring(url.lastIndexOf('/') + 1);
+        }
+
+        /**
+         * Position of the best ABI this artifact serves in {@code supportedAbis}, ordered by
+         * preference like {@code Build.SUPPORTED_ABIS}, or -1 when it serves none of them.
+         */
+        int abiRank(String[] supportedAbis) {
+            if (abis.isEmpty()) {
+                return 0;
+            }
+            for (int i = 0; i < supportedAbis.length; i++) {
+                if (abis.contains(supportedAbis[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        boolean servesDensity(String density) {
+            return densities.isEmpty() || densities.contains(density);
+        }
+    }
+
+    private final String version;
+    private final List<Artifact> artifacts;
+
+    private ReleaseManifest(String version, List<Artifact> artifacts) {
+        this.version = version;
+        this.artifacts = artifacts;
+    }
+
+    public static ReleaseManifest parse(String clearText) throws IOException {
+        String[] lines = clearText.trim().split("\\s*\r?\n\\s*");
+        if (lines.length < 3 || !HEADER.equals(lines[0]) || !lines[1].startsWith("version ")) {
+            throw new IOException("Unsupported release manifest");
+        }
+        String version = lines[1].substring("version ".length()).trim();
+        List<Artifact> artifacts = new ArrayList<>();
+        for (int i = 2; i < lines.length; i++) {
+            String[] fields = lines[i].split("\\s+");
+            if (fields.length != 6 || !fields[0].matches("[0-9a-fA-F]{64}")) {
+                throw new IOException("Invalid release manifest");
+            }
+            try {
+                artifacts.add(new Artifact(fields[0].toLowerCase(Locale.ROOT), Long.parseLong(fields[1]), fields[2],
+                        list(fields[3]), list(fields[4]), fields[5]));
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid release manifest", e);
+            }
+        }
+        return new ReleaseManifest(version, artifacts);
+    }
+
+    private static List<String> list(String field) {
+        return ANY.equals(field) ? Collections.emptyList() : Arrays.asList(field.split(","));
+    }
+
+    /**
+     * Resource bucket of a {@code DisplayMetrics.densityDpi} value, the nearest one above it
+     * like the resource resolver picks.
+     */
+    public static String densityBucket(int densityDpi) {
+        if (densityDpi <= 160) {
+            return "mdpi";
+        }
+        if (densityDpi <= 240) {
+            return "hdpi";
+        }
+        if (densityDpi <= 320) {
+            return "xhdpi";
+        }
+        if (densityDpi <= 480) {
+            return "xxhdpi";
+        }
+        return "xxxhdpi";
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public List<Artifact> getArtifacts() {
+        return artifacts;
+    }
+
+    /**
+     * The smallest artifact of {@code flavor} for the most preferred of {@code supportedAbis}
+     * any artifact serves and for {@code density}, or null when none fits this install.
+     */
+    @Nullable
+    public Artifact select(String flavor, String[] supportedAbis, String density) {
+        Artifact best = null;
+        int bestRank = Integer.MAX_VALUE;
+        for (Artifact artifact : artifacts) {
+            int rank = artifact.abiRank(supportedAbis);
+            if (!artifact.flavor.equals(flavor) || rank < 0 || !artifact.servesDensity(density)) {
+                continue;
+            }
+            // A 32-bit split is smaller but would move a 64-bit install to the slower ABI.
+            if (rank < bestRank || (rank == bestRank && artifact.size < best.size)) {
+                best = artifact;
+                bestRank = rank;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,88 @@
+package so.onekey.app.wallet;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Logging and tracing facade for the updater and bundle loading native code.
+ * <p>
+ * {@link #LOGGABLE} is a compile-time constant, so every log body is removed from release
+ * builds and messages are only formatted when they are actually printed. Arguments are still
+ * evaluated by the caller: call sites that box several values or compute them only for the log
+ * line check {@code if (Tracing.LOGGABLE)} themselves, so release builds skip that work too.
+ * Overloads taking {@code long} avoid boxing on hot paths. Trace sections and counters stay in release builds,
+ * they cost next to nothing unless a Perfetto/systrace session is recording.
+ */
+public final class Tracing {
+    public static final boolean LOGGABLE = BuildConfig.DEBUG;
+
+    public static final String COUNTER_DOWNLOAD_BYTES = "onekey.update.downloadBytes";
+    public static final String COUNTER_HASHED_BYTES = "onekey.update.hashedBytes";
+    public static final String COUNTER_BUNDLE_LOADS = "onekey.bundle.loads";
+    public static final String COUNTER_PREFETCH_BYTES = "onekey.bundle.prefetchBytes";
+
+    private static final AtomicLong hashedBytes = new AtomicLong();
+    private static final AtomicLong bundleLoads = new AtomicLong();
+
+    private Tracing() {
+    }
+
+    public static void d(String tag, String message) {
+        if (LOGGABLE) {
+            Log.d(tag, message);
+        }
+    }
+
+    public static void d(String tag, String format, long arg) {
+        if (LOGGABLE) {
+            Log.d(tag, String.format(Locale.ROOT, format, arg));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg) {
+        if (LOGGABLE) {
+            Log.d(tag, String.format(Locale.ROOT, format, arg));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2) {
+        if (LOGGABLE) {
+            Log.d(tag, String.format(Locale.ROOT, format, arg1, arg2));
+        }
+    }
+
+    public static void d(String tag, String format, Object arg1, Object arg2, Object arg3) {
+        if (LOGGABLE) {
+            Log.d(tag, String.format(Locale.ROOT, format, arg1, arg2, arg3));
+        }
+    }
+
+    /**
+     * Must be closed by {@link #endSection()} on the same thread.
+     */
+    public static void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    public static void endSection() {
+        Trace.endSection();
+    }
+
+    public static void setCounter(String name, long value) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled()) {
+            Trace.setCounter(name, value);
+        }
+    }
+
+    public static void onBytesHashed(long byteCount) {
+        setCounter(COUNTER_HASHED_BYTES, hashedBytes.addAndGet(byteCount));
+    }
+
+    public static void onBundleLoaded() {
+        setCounter(COUNTER_BUNDLE_LOADS, bundleLoads.incrementAndGet());
+    }
+}
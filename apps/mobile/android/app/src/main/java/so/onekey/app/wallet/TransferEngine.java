@@ -0,0 +1,145 @@
+package so.onekey.app.wallet;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+/**
+ * Moves bytes from a response body to a sink in batches sized to the observed throughput.
+ * <p>
+ * {@link BufferedSource#read(Buffer, long)} hands whole Okio segments over to the sink's buffer
+ * without copying them, so the only per-byte cost left is the write itself. Instead of emitting
+ * every 8 KB the sink is emitted once roughly {@link #TARGET_BATCH_MS} worth of data has been
+ * buffered, which keeps the number of write syscalls low on fast links while slow links still
+ * report progress regularly. Progress is only computed when the next whole percent is crossed.
+ * An optional {@link BandwidthLimiter} is charged after every read. Interrupting the thread stops
+ * the transfer at the next batch, also when there is no Content-Length to report progress on.
+ */
+public class TransferEngine {
+    private static final long SEGMENT_SIZE = 8 * 1024;
+    private static final long READ_SIZE = 64 * 1024;
+    private static final long MIN_BATCH_BYTES = 64 * 1024;
+    private static final long MAX_BATCH_BYTES = 1024 * 1024;
+    private static final long TARGET_BATCH_MS = 100;
+
+    public interface Callback {
+        /**
+         * Called after every batch has been emitted to the sink. Throwing aborts the transfer.
+         */
+        void onBatch(long batchBytes, long elapsedMs) throws IOException;
+
+        /**
+         * Called each time a new whole percent is reached.
+         *
+         * @return false to stop the transfer.
+         */
+        boolean onProgress(int progress);
+    }
+
+    private final UpdaterClock clock;
+    private long batchBytes = MIN_BATCH_BYTES;
+    private BandwidthLimiter limiter;
+
+    public TransferEngine() {
+        this(UpdaterClock.SYSTEM);
+    }
+
+    public TransferEngine(UpdaterClock clock) {
+        this.clock = clock;
+    }
+
+    public void setLimiter(BandwidthLimiter limiter) {
+        this.limiter = limiter;
+    }
+
+    /**
+     * @return false if {@link Callback#onProgress(int)} asked to stop or the thread was
+     * interrupted, true at end of stream.
+     */
+    public boolean transfer(BufferedSource source, BufferedSink sink, long offset, long contentLength, Callback callback) throws IOException {
+        Buffer buffer = sink.buffer();
+        long total = offset;
+        long nextProgressAt = nextProgressThreshold(total, contentLength);
+        long pending = 0;
+        long batchStartAt = clock.elapsedRealtime();
+        while (true) {
+            long bytesRead;
+            try {
+                bytesRead = source.read(buffer, READ_SIZE);
+            } catch (IOException e) {
+                // Keep what already arrived so a range request can continue right after it.
+                emitPending(sink, callback, pending, batchStartAt);
+                throw e;
+            }
+            if (bytesRead == -1) {
+                break;
+            }
+            total += bytesRead;
+            pending += bytesRead;
+            if (limiter != null) {
+                try {
+                    limiter.acquire(bytesRead);
+                } catch (InterruptedIOException e) {
+                    emitPending(sink, callback, pending, batchStartAt);
+                    throw e;
+                }
+            }
+            if (pending < batchBytes) {
+                continue;
+            }
+            sink.emit();
+            long now = clock.elapsedRealtime();
+            long elapsed = now - batchStartAt;
+            adapt(pending, elapsed);
+            callback.onBatch(pending, elapsed);
+            pending = 0;
+            batchStartAt = now;
+            if (Thread.currentThread().isInterrupted()) {
+                return false;
+            }
+            if (total >= nextProgressAt) {
+                if (!callback.onProgress((int) ((total * 100) / contentLength))) {
+                    return false;
+                }
+                nextProgressAt = nextProgressThreshold(total, contentLength);
+            }
+        }
+        emitPending(sink, callback, pending, batchStartAt);
+        if (total >= nextProgressAt) {
+            callback.onProgress((int) ((total * 100) / contentLength));
+        }
+        return true;
+    }
+
+    private void emitPending(BufferedSink sink, Callback callback, long pending, long batchStartAt) throws IOException {
+        if (pending > 0) {
+            sink.emit();
+            callback.onBatch(pending, clock.elapsedRealtime() - batchStartAt);
+        }
+    }
+
+    /**
+     * First byte count at which the integer percentage will be larger than the current one.
+     */
+    private static long nextProgressThreshold(long total, long contentLength) {
+        if (contentLength <= 0) {
+            return Long.MAX_VALUE;
+        }
+        long progress = (total * 100) / contentLength;
+        if (progress >= 100) {
+            return Long.MAX_VALUE;
+        }
+        return ((progress + 1) * contentLength + 99) / 100;
+    }
+
+    private void adapt(long bytes, long elapsedMs) {
+        long target = bytes * TARGET_BATCH_MS / Math.max(elapsedMs, 1);
+        // Halfway towards the new estimate to smooth out bursts, rounded to whole segments.
+        long next = (batchBytes + target) / 2;
+        next = Math.max(MIN_BATCH_BYTES, Math.min(MAX_BATCH_BYTES, next));
+        batchBytes = next - next % SEGMENT_SIZE;
+    }
+}
@@ -0,0 +1,104 @@
+package so.onekey.app.wallet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Signed per-chunk SHA-256 list of one release artifact, published next to it as
+ * {@code <file>.TREEHASH.asc}:
+ * <pre>
+ * TREEHASH sha256 1
+ * length 157286400
+ * chunk-size 4194304
+ * &lt;sha256 of bytes [0, 4194304)&gt;
+ * &lt;sha256 of bytes [4194304, 8388608)&gt;
+ * ...
+ * </pre>
+ * Unlike a single digest over the whole file, every chunk can be checked on its own: in
+ * parallel once the file is on disk, or as soon as its bytes have arrived during a download.
+ */
+public class TreeHashManifest {
+    private static final String HEADER = "TREEHASH sha256 1";
+
+    private final long length;
+    private final int chunkSize;
+    private final List<String> chunkHashes;
+
+    private TreeHashManifest(long length, int chunkSize, List<String> chunkHashes) {
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.chunkHashes = chunkHashes;
+    }
+
+    public static TreeHashManifest parse(String clearText) throws IOException {
+        String[] lines = clearText.trim().split("\\s*\r?\n\\s*");
+        if (lines.length < 3 || !HEADER.equals(lines[0])) {
+            throw new IOException("Unsupported tree hash manifest");
+        }
+        try {
+            long length = Long.parseLong(value(lines[1], "length"));
+            int chunkSize = Integer.parseInt(value(lines[2], "chunk-size"));
+            if (length < 0 || chunkSize <= 0) {
+                throw new IOException("Invalid tree hash manifest");
+            }
+            List<String> chunkHashes = new ArrayList<>();
+            for (int i = 3; i < lines.length; i++) {
+                if (!lines[i].matches("[0-9a-fA-F]{64}")) {
+                    throw new IOException("Invalid tree hash manifest");
+                }
+                chunkHashes.add(lines[i].toLowerCase(Locale.ROOT));
+            }
+            if (chunkHashes.size() != (length + chunkSize - 1) / chunkSize) {
+                throw new IOException("Invalid tree hash manifest");
+            }
+            return new TreeHashManifest(length, chunkSize, chunkHashes);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid tree hash manifest", e);
+        }
+    }
+
+    private static String value(String line, String key) throws IOException {
+        if (!line.startsWith(key + " ")) {
+            throw new IOException("Invalid tree hash manifest");
+        }
+        return line.substring(key.length() + 1).trim();
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public int getChunkCount() {
+        return chunkHashes.size();
+    }
+
+    public long chunkStart(int index) {
+        return (long) index * chunkSize;
+    }
+
+    public int chunkLength(int index) {
+        return (int) Math.min(chunkSize, length - chunkStart(index));
+    }
+
+    public String expectedHash(int index) {
+        return chunkHashes.get(index);
+    }
+
+    /**
+     * SHA-256 over the newline separated chunk hashes, identifies the artifact as a whole.
+     */
+    public String rootHash() throws NoSuchAlgorithmException {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(String.join("\n", chunkHashes).getBytes(StandardCharsets.UTF_8));
+        return ArtifactVerifier.bytesToHex(digest.digest());
+    }
+}
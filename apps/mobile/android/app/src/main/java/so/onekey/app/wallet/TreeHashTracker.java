@@ -0,0 +1,211 @@
+package so.onekey.app.wallet;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Verifies the chunks of a {@link TreeHashManifest} while they are being downloaded.
+ * <p>
+ * Wraps the download's {@link UpdateDownloader.Destination} and hashes every byte on its way
+ * to the file, straight from Okio's segments. Each chunk is checked as soon as its last byte
+ * went through, in whatever order chunks complete, so a corrupted chunk stops the download
+ * immediately. A chunk whose bytes did not arrive as one contiguous run, like a range segment
+ * starting inside it, is left for {@link #verifyRemaining(File)} to read back from disk.
+ */
+public class TreeHashTracker implements UpdateDownloader.Destination {
+    private static final byte PENDING = 0;
+    private static final byte VERIFIED = 1;
+    private static final byte FAILED = 2;
+    private static final byte GAP = 3;
+
+    public static class ChunkMismatchException extends IOException {
+        ChunkMismatchException(String message) {
+            super("Installation package possibly compromised, " + message);
+        }
+
+        ChunkMismatchException(int index) {
+            this("chunk " + index + " does not match");
+        }
+    }
+
+    private final TreeHashManifest manifest;
+    private final UpdateDownloader.Destination destination;
+    private final MessageDigest[] digests;
+    private final long[] hashedUpTo;
+    private final byte[] states;
+
+    public TreeHashTracker(TreeHashManifest manifest, UpdateDownloader.Destination destination) {
+        this.manifest = manifest;
+        this.destination = destination;
+        int chunkCount = manifest.getChunkCount();
+        this.digests = new MessageDigest[chunkCount];
+        this.hashedUpTo = new long[chunkCount];
+        this.states = new byte[chunkCount];
+        reset();
+    }
+
+    public TreeHashManifest getManifest() {
+        return manifest;
+    }
+
+    /**
+     * Forgets all progress, the next {@link #verifyRemaining(File)} hashes every chunk.
+     */
+    public synchronized void reset() {
+        Arrays.fill(digests, null);
+        Arrays.fill(states, PENDING);
+        for (int i = 0; i < hashedUpTo.length; i++) {
+            hashedUpTo[i] = manifest.chunkStart(i);
+        }
+    }
+
+    @Override
+    public UpdateDownloader.Output create(long contentLength) throws IOException {
+        if (contentLength >= 0 && contentLength != manifest.getLength()) {
+            throw new ChunkMismatchException("size " + contentLength + " does not match");
+        }
+        reset();
+        return new TrackingOutput(destination.create(contentLength));
+    }
+
+    @Override
+    public UpdateDownloader.Output resume() throws IOException {
+        return new TrackingOutput(destination.resume());
+    }
+
+    private synchronized void update(long offset, byte[] data, int start, int count) throws IOException {
+        Tracing.onBytesHashed(count);
+        while (count > 0) {
+            int index = (int) (offset / manifest.getChunkSize());
+            if (index >= states.length) {
+                throw new ChunkMismatchException("more data than the signed size");
+            }
+            long chunkEnd = manifest.chunkStart(index) + manifest.chunkLength(index);
+            int length = (int) Math.min(count, chunkEnd - offset);
+            if (states[index] == PENDING && offset == hashedUpTo[index]) {
+                MessageDigest digest = digests[index];
+                if (digest == null) {
+                    digest = newDigest();
+                    digests[index] = digest;
+                }
+                digest.update(data, start, length);
+                hashedUpTo[index] += length;
+                if (hashedUpTo[index] == chunkEnd) {
+                    digests[index] = null;
+                    boolean valid = ArtifactVerifier.bytesToHex(digest.digest()).equals(manifest.expectedHash(index));
+                    states[index] = valid ? VERIFIED : FAILED;
+                    if (!valid) {
+                        throw new ChunkMismatchException(index);
+                    }
+                }
+            } else if (states[index] != FAILED) {
+                // Not contiguous with what was hashed so far, or written twice.
+                digests[index] = null;
+                states[index] = GAP;
+            }
+            offset += length;
+            start += length;
+            count -= length;
+        }
+    }
+
+    private static MessageDigest newDigest() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public synchronized List<Integer> unverifiedChunks() {
+        List<Integer> chunks = new ArrayList<>();
+        for (int i = 0; i < states.length; i++) {
+            if (states[i] != VERIFIED) {
+                chunks.add(i);
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Hashes the chunks that could not be verified while downloading from {@code file}, in
+     * parallel. Without a file to read back, every chunk must already be verified.
+     */
+    public boolean verifyRemaining(@Nullable File file) throws IOException, InterruptedException {
+        List<Integer> remaining = unverifiedChunks();
+        if (remaining.isEmpty()) {
+            return file == null || file.length() == manifest.getLength();
+        }
+        if (file == null) {
+            return false;
+        }
+        return TreeHashVerifier.verifyChunks(file, manifest, remaining).isEmpty();
+    }
+
+    private class TrackingOutput implements UpdateDownloader.Output {
+        private final UpdateDownloader.Output output;
+
+        TrackingOutput(UpdateDownloader.Output output) {
+            this.output = output;
+        }
+
+        @Override
+        public BufferedSink sink(long offset) throws IOException {
+            return Okio.buffer(new HashingSink(output.sink(offset), offset));
+        }
+
+        @Override
+        public void finish(long length) throws IOException {
+            output.finish(length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+        }
+    }
+
+    private class HashingSink extends ForwardingSink {
+        private final BufferedSink sink;
+        private final Buffer.UnsafeCursor cursor = new Buffer.UnsafeCursor();
+        private long position;
+
+        HashingSink(BufferedSink sink, long offset) {
+            super(sink);
+            this.sink = sink;
+            this.position = offset;
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            source.readUnsafe(cursor);
+            try {
+                long remaining = byteCount;
+                for (int available = cursor.seek(0); remaining > 0 && available > 0; available = cursor.next()) {
+                    int count = (int) Math.min(available, remaining);
+                    update(position, cursor.data, cursor.start, count);
+                    position += count;
+                    remaining -= count;
+                }
+            } finally {
+                cursor.close();
+            }
+            super.write(source, byteCount);
+            // Whatever was emitted to this sink must reach the destination, a range continuation
+            // starts right after it.
+            sink.emit();
+        }
+    }
+}
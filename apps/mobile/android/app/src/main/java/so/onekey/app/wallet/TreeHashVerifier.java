@@ -0,0 +1,82 @@
+package so.onekey.app.wallet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Checks a file against a {@link TreeHashManifest}, hashing its chunks concurrently on the
+ * shared hash pool. A 150 MB APK in 4 MB chunks keeps every core busy, where one SHA-256 over
+ * the whole file can only use one.
+ */
+public class TreeHashVerifier {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * @return the indexes of the chunks that do not match, empty when the whole file matches.
+     */
+    public static List<Integer> verifyFile(File file, TreeHashManifest manifest) throws IOException, InterruptedException {
+        List<Integer> chunks = new ArrayList<>(manifest.getChunkCount());
+        for (int i = 0; i < manifest.getChunkCount(); i++) {
+            chunks.add(i);
+        }
+        return verifyChunks(file, manifest, chunks);
+    }
+
+    public static List<Integer> verifyChunks(File file, TreeHashManifest manifest, List<Integer> chunks) throws IOException, InterruptedException {
+        if (file.length() != manifest.getLength()) {
+            throw new IOException("Installation package possibly compromised");
+        }
+        Tracing.beginSection("update.treeHash");
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            // Positional reads on one channel are safe from several threads.
+            final FileChannel channel = randomAccessFile.getChannel();
+            ExecutorService pool = ArtifactVerifier.hashPool();
+            List<Future<Boolean>> futures = new ArrayList<>(chunks.size());
+            for (final int index : chunks) {
+                futures.add(pool.submit(() -> hashChunk(channel, manifest, index)));
+            }
+            List<Integer> mismatches = new ArrayList<>();
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    if (!futures.get(i).get()) {
+                        mismatches.add(chunks.get(i));
+                    }
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause() != null ? e.getCause() : e;
+                    throw new IOException(cause.getMessage(), cause);
+                }
+            }
+            return mismatches;
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private static boolean hashChunk(FileChannel channel, TreeHashManifest manifest, int index) throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        long position = manifest.chunkStart(index);
+        long end = position + manifest.chunkLength(index);
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(READ_BUFFER_SIZE, end - position));
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                return false;
+            }
+            digest.update(buffer.array(), 0, count);
+            position += count;
+        }
+        Tracing.onBytesHashed(manifest.chunkLength(index));
+        return ArtifactVerifier.bytesToHex(digest.digest()).equals(manifest.expectedHash(index));
+    }
+}
@@ -0,0 +1,354 @@
+package so.onekey.app.wallet;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+/**
+ * Downloads an update from an ordered list of mirrors.
+ * <p>
+ * When more than one mirror is given, each one is probed with a one byte range request and
+ * the list is re-ordered by time to first byte. A mirror whose throughput stays below
+ * {@code minBytesPerSecond} is abandoned mid-transfer and the download continues from the
+ * next one with a range request. Failed requests are retried on the next mirror after a
+ * jittered exponential backoff.
+ * <p>
+ * Bytes go to a {@link Destination}, a file by default or an install session, see
+ * {@link InstallSession}.
+ */
+public class UpdateDownloader {
+    private static final String TAG = "UPDATE APP";
+    private static final int MAX_FAILURES = 5;
+    private static final long BASE_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 8000;
+    private static final long PROBE_TIMEOUT_MS = 3000;
+    private static final long THROUGHPUT_WINDOW_MS = 5000;
+
+    public interface Listener {
+        void onStart(long contentLength);
+
+        /**
+         * @param bytesPerSecond throughput over the last second.
+         */
+        void onProgress(int progress, long bytesPerSecond);
+    }
+
+    public interface Destination {
+        /**
+         * Opens the destination for a fresh download, dropping anything written before.
+         */
+        Output create(long contentLength) throws IOException;
+
+        /**
+         * Reopens the destination to continue right after the bytes already written.
+         */
+        Output resume() throws IOException;
+    }
+
+    public interface Output extends Closeable {
+        BufferedSink sink(long offset) throws IOException;
+
+        /**
+         * Called once all {@code length} bytes have been written and flushed.
+         */
+        void finish(long length) throws IOException;
+    }
+
+    private static class SlowMirrorException extends IOException {
+        SlowMirrorException(long bytesPerSecond) {
+            super("Mirror too slow: " + bytesPerSecond + " B/s");
+        }
+    }
+
+    private static class HttpStatusException extends IOException {
+        final int code;
+
+        HttpStatusException(int code) {
+            super("Server not responding, please try again later.");
+            this.code = code;
+        }
+
+        boolean isTransient() {
+            return code == 408 || code == 429 || code >= 500;
+        }
+    }
+
+    private final List<String> mirrors;
+    private final Destination destination;
+    private final long minBytesPerSecond;
+    private final UpdateStats stats;
+    private final UpdaterClock clock;
+    private final Listener listener;
+    private final OkHttpClient client;
+    private final Random random = new Random();
+    private final TransferEngine engine;
+    private volatile Call call;
+    private BandwidthLimiter limiter;
+
+    private long contentLength = -1;
+    private long totalBytesRead = 0;
+    private boolean started = false;
+    private long windowStartAt;
+    private long windowBytes;
+    private long windowThrottledMs;
+
+    public UpdateDownloader(List<String> mirrors, File target, long minBytesPerSecond, UpdateStats stats, Listener listener) {
+        this(mirrors, DownloadTarget.destination(target), minBytesPerSecond, stats, listener);
+    }
+
+    public UpdateDownloader(List<String> mirrors, Destination destination, long minBytesPerSecond, UpdateStats stats, Listener listener) {
+        this.mirrors = new ArrayList<>(mirrors);
+        this.destination = destination;
+        this.minBytesPerSecond = minBytesPerSecond;
+        this.stats = stats;
+        this.listener = listener;
+        this.clock = stats.getClock();
+        this.engine = new TransferEngine(clock);
+        this.client = new OkHttpClient.Builder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .eventListener(stats.eventListener())
+                .build();
+    }
+
+    /**
+     * Throttles the transfer, must be called before {@link #download()}.
+     */
+    public void setLimiter(BandwidthLimiter limiter) {
+        this.limiter = limiter;
+        engine.setLimiter(limiter);
+    }
+
+    public void cancel() {
+        Call current = call;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+
+    private boolean checkInterrupt() {
+        boolean isInterrupted = Thread.currentThread().isInterrupted();
+        if (isInterrupted) {
+            cancel();
+        }
+        return isInterrupted;
+    }
+
+    /**
+     * @return false if the download was interrupted, true once the whole file is on disk.
+     */
+    public boolean download() throws IOException {
+        Tracing.beginSection("update.download");
+        try {
+            return downloadFromMirrors();
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private boolean downloadFromMirrors() throws IOException {
+        List<String> ordered = rankMirrors();
+        int mirrorIndex = 0;
+        int failures = 0;
+        int slowSwitches = 0;
+        IOException lastError = null;
+        while (true) {
+            if (checkInterrupt()) {
+                return false;
+            }
+            String mirror = ordered.get(mirrorIndex);
+            try {
+                return transferFrom(mirror, slowSwitches < ordered.size() - 1);
+            } catch (SlowMirrorException e) {
+                Tracing.d(TAG, "switch mirror: %s", e.getMessage());
+                slowSwitches++;
+                stats.onMirrorSwitch();
+                mirrorIndex = (mirrorIndex + 1) % ordered.size();
+            } catch (DownloadTarget.InsufficientSpaceException | TreeHashTracker.ChunkMismatchException e) {
+                throw e;
+            } catch (IOException e) {
+                if (checkInterrupt()) {
+                    return false;
+                }
+                lastError = e;
+                failures++;
+                boolean retryable = !(e instanceof HttpStatusException) || ((HttpStatusException) e).isTransient() || ordered.size() > 1;
+                if (!retryable || failures >= MAX_FAILURES) {
+                    throw lastError;
+                }
+                stats.onRetry();
+                if (ordered.size() > 1) {
+                    stats.onMirrorSwitch();
+                    mirrorIndex = (mirrorIndex + 1) % ordered.size();
+                }
+                try {
+                    clock.sleep(backoffMillis(failures));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+    }
+
+    private long backoffMillis(int failures) {
+        long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << Math.min(failures - 1, 16));
+        // "Equal jitter": keep half of the delay and randomise the rest.
+        return ceiling / 2 + (long) (random.nextDouble() * (ceiling / 2));
+    }
+
+    private List<String> rankMirrors() {
+        if (mirrors.size() < 2) {
+            return mirrors;
+        }
+        final AtomicLongArray ttfb = new AtomicLongArray(mirrors.size());
+        final CountDownLatch latch = new CountDownLatch(mirrors.size());
+        OkHttpClient probeClient = client.newBuilder()
+                .callTimeout(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .eventListener(EventListener.NONE)
+                .build();
+        List<Call> probes = new ArrayList<>();
+        for (int i = 0; i < mirrors.size(); i++) {
+            final int index = i;
+            ttfb.set(index, Long.MAX_VALUE);
+            final long probeStart = clock.elapsedRealtime();
+            Request request = new Request.Builder()
+                    .url(mirrors.get(index))
+                    .header("Range", "bytes=0-0")
+                    .build();
+            Call probe = probeClient.newCall(request);
+            probes.add(probe);
+            probe.enqueue(new Callback() {
+                @Override
+                public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                    latch.countDown();
+                }
+
+                @Override
+                public void onResponse(@NonNull Call call, @NonNull Response response) {
+                    if (response.isSuccessful()) {
+                        ttfb.set(index, clock.elapsedRealtime() - probeStart);
+                    }
+                    response.close();
+                    latch.countDown();
+                }
+            });
+        }
+        try {
+            latch.await(PROBE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Call probe : probes) {
+            probe.cancel();
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < mirrors.size(); i++) {
+            order.add(i);
+        }
+        // Stable sort keeps the caller's preference between equally fast or failed mirrors.
+        Collections.sort(order, (a, b) -> Long.compare(ttfb.get(a), ttfb.get(b)));
+        List<String> ranked = new ArrayList<>();
+        for (int index : order) {
+            ranked.add(mirrors.get(index));
+        }
+        Tracing.d(TAG, "mirror order: %s", ranked);
+        return ranked;
+    }
+
+    private boolean transferFrom(String url, boolean canSwitchMirror) throws IOException {
+        Request.Builder requestBuilder = new Request.Builder().url(url);
+        if (totalBytesRead > 0) {
+            requestBuilder.header("Range", "bytes=" + totalBytesRead + "-");
+        }
+        Call current = client.newCall(requestBuilder.build());
+        this.call = current;
+        try (Response response = current.execute()) {
+            if (!response.isSuccessful()) {
+                throw new HttpStatusException(response.code());
+            }
+            ResponseBody body = response.body();
+            boolean resumed = totalBytesRead > 0 && response.code() == 206;
+            if (!resumed) {
+                // Either a fresh download or the mirror ignored the range, start over.
+                totalBytesRead = 0;
+                contentLength = body.contentLength();
+            } else if (contentLength < 0 && body.contentLength() >= 0) {
+                contentLength = totalBytesRead + body.contentLength();
+            }
+            if (!started) {
+                started = true;
+                listener.onStart(contentLength);
+                stats.markTransferStart(contentLength);
+            }
+
+            BufferedSource source = body.source();
+            try (Output output = resumed ? destination.resume() : destination.create(contentLength)) {
+                BufferedSink sink = output.sink(totalBytesRead);
+                windowStartAt = clock.elapsedRealtime();
+                windowBytes = 0;
+                windowThrottledMs = throttledMs();
+                boolean completed = engine.transfer(source, sink, totalBytesRead, contentLength, new TransferEngine.Callback() {
+                    @Override
+                    public void onBatch(long batchBytes, long elapsedMs) throws IOException {
+                        totalBytesRead += batchBytes;
+                        stats.onBytesTransferred(batchBytes);
+                        Tracing.setCounter(Tracing.COUNTER_DOWNLOAD_BYTES, totalBytesRead);
+                        if (!canSwitchMirror || minBytesPerSecond <= 0) {
+                            return;
+                        }
+                        windowBytes += batchBytes;
+                        long windowMs = clock.elapsedRealtime() - windowStartAt;
+                        if (windowMs >= THROUGHPUT_WINDOW_MS) {
+                            // Our own throttling must not count against the mirror.
+                            long networkMs = windowMs - (throttledMs() - windowThrottledMs);
+                            long rate = windowBytes * 1000 / Math.max(networkMs, 1);
+                            if (networkMs >= THROUGHPUT_WINDOW_MS / 2 && rate < minBytesPerSecond) {
+                                throw new SlowMirrorException(rate);
+                            }
+                            windowStartAt += windowMs;
+                            windowBytes = 0;
+                            windowThrottledMs = throttledMs();
+                        }
+                    }
+
+                    @Override
+                    public boolean onProgress(int progress) {
+                        listener.onProgress(progress, stats.getCurrentBytesPerSecond());
+                        return !checkInterrupt();
+                    }
+                });
+                sink.flush();
+                if (!completed) {
+                    return false;
+                }
+                output.finish(totalBytesRead);
+            }
+        }
+        stats.markTransferEnd();
+        stats.setThrottledMs(throttledMs());
+        return true;
+    }
+
+    private long throttledMs() {
+        return limiter != null ? limiter.getThrottledMs() : 0;
+    }
+}
@@ -0,0 +1,273 @@
+package so.onekey.app.wallet;
+
+import android.os.Bundle;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import okhttp3.Response;
+
+/**
+ * Per-update timings and transfer counters collected by {@link UpdaterEngine}.
+ * <p>
+ * All durations are wall-clock milliseconds measured with {@link UpdaterClock#elapsedRealtime()},
+ * a phase that never ran reports -1.
+ */
+public class UpdateStats {
+    private static final long THROUGHPUT_WINDOW_MS = 1000;
+
+    private long startedAt = -1;
+    private long callStartAt = -1;
+    private long connectStartAt = -1;
+    private long connectMs = -1;
+    private long ttfbMs = -1;
+    private long transferStartAt = -1;
+    private long transferMs = -1;
+    private long signatureFetchMs = -1;
+    private long pgpVerifyMs = -1;
+    private long hashMs = -1;
+    private long packageCheckMs = -1;
+    private long downloadedAt = -1;
+    private long downloadedToReadyMs = -1;
+    private long readyAt = -1;
+
+    private long contentLength = -1;
+    private long bytesTransferred = 0;
+    private long peakBytesPerSecond = 0;
+    private long currentBytesPerSecond = -1;
+    private long throttledMs = 0;
+    private long windowStartAt = -1;
+    private long windowBytes = 0;
+    private int retries = 0;
+    private int mirrorSwitches = 0;
+    private boolean cacheHit = false;
+    @Nullable
+    private String artifact;
+
+    private final UpdaterClock clock;
+
+    public UpdateStats() {
+        this(UpdaterClock.SYSTEM);
+    }
+
+    public UpdateStats(UpdaterClock clock) {
+        this.clock = clock;
+    }
+
+    public UpdaterClock getClock() {
+        return clock;
+    }
+
+    private long now() {
+        return clock.elapsedRealtime();
+    }
+
+    public synchronized void markStart() {
+        startedAt = now();
+    }
+
+    public synchronized void markTransferStart(long contentLength) {
+        this.contentLength = contentLength;
+        transferStartAt = now();
+        windowStartAt = transferStartAt;
+        windowBytes = 0;
+    }
+
+    /**
+     * Called from the transfer loop for every chunk written to disk, keep it cheap.
+     */
+    public synchronized void onBytesTransferred(long byteCount) {
+        bytesTransferred += byteCount;
+        windowBytes += byteCount;
+        long current = now();
+        long elapsed = current - windowStartAt;
+        if (elapsed >= THROUGHPUT_WINDOW_MS) {
+            long rate = windowBytes * 1000 / elapsed;
+            currentBytesPerSecond = rate;
+            if (rate > peakBytesPerSecond) {
+                peakBytesPerSecond = rate;
+            }
+            windowStartAt = current;
+            windowBytes = 0;
+        }
+    }
+
+    public synchronized void markTransferEnd() {
+        if (transferStartAt >= 0) {
+            transferMs = now() - transferStartAt;
+        }
+        // A transfer shorter than one window never closed it, fall back to the average.
+        long average = averageBytesPerSecond();
+        if (average > peakBytesPerSecond) {
+            peakBytesPerSecond = average;
+        }
+    }
+
+    public synchronized void onRetry() {
+        retries++;
+    }
+
+    public synchronized void onMirrorSwitch() {
+        mirrorSwitches++;
+    }
+
+    /**
+     * A verified artifact from an earlier download was reused, nothing was transferred.
+     */
+    public synchronized void markCacheHit() {
+        cacheHit = true;
+    }
+
+    /**
+     * File name of the artifact picked from the release manifest.
+     */
+    public synchronized void setArtifact(String name) {
+        artifact = name;
+    }
+
+    public synchronized void markDownloaded() {
+        downloadedAt = now();
+    }
+
+    public synchronized void markInstallReady() {
+        readyAt = now();
+        if (downloadedAt >= 0) {
+            downloadedToReadyMs = readyAt - downloadedAt;
+        }
+    }
+
+    public synchronized void setSignatureFetchMs(long ms) {
+        signatureFetchMs = ms;
+    }
+
+    public synchronized void setPgpVerifyMs(long ms) {
+        pgpVerifyMs = ms;
+    }
+
+    public synchronized void setHashMs(long ms) {
+        hashMs = ms;
+    }
+
+    public synchronized void setPackageCheckMs(long ms) {
+        packageCheckMs = ms;
+    }
+
+    public synchronized void setThrottledMs(long ms) {
+        throttledMs = ms;
+    }
+
+    public synchronized long getTransferMs() {
+        return transferMs;
+    }
+
+    public synchronized long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    /**
+     * Rate of the last completed one second window, or of the running one before that.
+     */
+    public synchronized long getCurrentBytesPerSecond() {
+        if (currentBytesPerSecond >= 0) {
+            return currentBytesPerSecond;
+        }
+        long elapsed = now() - windowStartAt;
+        return windowStartAt >= 0 && elapsed > 0 ? windowBytes * 1000 / elapsed : 0;
+    }
+
+    private long averageBytesPerSecond() {
+        if (transferMs <= 0) {
+            return 0;
+        }
+        return bytesTransferred * 1000 / transferMs;
+    }
+
+    /**
+     * Connect and time-to-first-byte come from OkHttp's call events, so every call made for
+     * the download should be created with this listener.
+     */
+    public EventListener eventListener() {
+        return new EventListener() {
+            @Override
+            public void callStart(@NonNull Call call) {
+                synchronized (UpdateStats.this) {
+                    callStartAt = now();
+                }
+            }
+
+            @Override
+            public void connectStart(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy) {
+                synchronized (UpdateStats.this) {
+                    connectStartAt = now();
+                }
+            }
+
+            @Override
+            public void connectEnd(@NonNull Call call, @NonNull InetSocketAddress inetSocketAddress, @NonNull Proxy proxy, Protocol protocol) {
+                synchronized (UpdateStats.this) {
+                    if (connectStartAt >= 0) {
+                        connectMs = now() - connectStartAt;
+                    }
+                }
+            }
+
+            @Override
+            public void responseHeadersEnd(@NonNull Call call, @NonNull Response response) {
+                synchronized (UpdateStats.this) {
+                    if (callStartAt >= 0 && ttfbMs < 0) {
+                        ttfbMs = now() - callStartAt;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Every counter, handed across processes and turned into a JS object by the module.
+     */
+    public synchronized Bundle toBundle() {
+        Bundle map = new Bundle();
+        map.putLong("connectMs", connectMs);
+        map.putLong("ttfbMs", ttfbMs);
+        map.putLong("transferMs", transferMs);
+        map.putLong("signatureFetchMs", signatureFetchMs);
+        map.putLong("pgpVerifyMs", pgpVerifyMs);
+        map.putLong("hashMs", hashMs);
+        map.putLong("packageCheckMs", packageCheckMs);
+        map.putLong("downloadedToReadyMs", downloadedToReadyMs);
+        map.putLong("totalMs", startedAt >= 0 ? (readyAt >= 0 ? readyAt : now()) - startedAt : -1);
+        map.putLong("contentLength", contentLength);
+        map.putLong("bytesTransferred", bytesTransferred);
+        map.putLong("averageBytesPerSecond", averageBytesPerSecond());
+        map.putLong("peakBytesPerSecond", peakBytesPerSecond);
+        map.putInt("retries", retries);
+        map.putInt("mirrorSwitches", mirrorSwitches);
+        map.putLong("throttledMs", throttledMs);
+        map.putBoolean("cacheHit", cacheHit);
+        map.putString("artifact", artifact);
+        return map;
+    }
+
+    /**
+     * Compact form attached to the {@code update/downloaded} event.
+     */
+    public synchronized Bundle toSummaryBundle() {
+        Bundle map = new Bundle();
+        map.putLong("ttfbMs", ttfbMs);
+        map.putLong("transferMs", transferMs);
+        map.putLong("bytesTransferred", bytesTransferred);
+        map.putLong("averageBytesPerSecond", averageBytesPerSecond());
+        map.putLong("peakBytesPerSecond", peakBytesPerSecond);
+        map.putInt("retries", retries);
+        map.putLong("throttledMs", throttledMs);
+        map.putBoolean("cacheHit", cacheHit);
+        map.putString("artifact", artifact);
+        return map;
+    }
+}
@@ -0,0 +1,183 @@
+package so.onekey.app.wallet;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.SparseArray;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UI process side of {@link UpdaterService}. Binds on first use, queues requests until the
+ * {@code :updater} process is connected and hands its events to a {@link Listener}.
+ * <p>
+ * All state is confined to the main thread. The binding is kept across restarts of the
+ * updater process, the system reconnects it on its own.
+ */
+class UpdaterClient implements UserPresence.Listener {
+    private static final String TAG = "UPDATE APP";
+
+    interface Listener {
+        void onEvent(int what, Bundle data);
+
+        /**
+         * The updater process died, pending requests have already failed.
+         */
+        void onDisconnected();
+    }
+
+    interface Callback {
+        void onResult(Bundle result, @Nullable String error);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Messenger replyTo = new Messenger(new Handler(Looper.getMainLooper(), this::handleMessage));
+    private final List<Message> pending = new ArrayList<>();
+    private final SparseArray<Callback> callbacks = new SparseArray<>();
+    private int nextRequestId = 1;
+    private boolean bound = false;
+    @Nullable
+    private Messenger service;
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = new Messenger(binder);
+            Message register = Message.obtain(null, UpdaterProtocol.MSG_REGISTER);
+            deliver(register);
+            UserPresence.setListener(UpdaterClient.this);
+            for (Message message : pending) {
+                deliver(message);
+            }
+            pending.clear();
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            Tracing.d(TAG, "updater process disconnected");
+            service = null;
+            UserPresence.setListener(null);
+            failCallbacks("The updater process stopped.");
+            listener.onDisconnected();
+        }
+    };
+
+    UpdaterClient(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+    }
+
+    /**
+     * Connects ahead of the first request, so the current download state arrives early.
+     */
+    void connect() {
+        handler.post(this::bind);
+    }
+
+    void send(int what, @Nullable Bundle data) {
+        request(what, data, null);
+    }
+
+    void request(final int what, @Nullable final Bundle data, @Nullable final Callback callback) {
+        handler.post(() -> {
+            Message message = Message.obtain(null, what);
+            if (callback != null) {
+                message.arg1 = nextRequestId++;
+                callbacks.put(message.arg1, callback);
+            }
+            if (data != null) {
+                message.setData(data);
+            }
+            if (service != null) {
+                deliver(message);
+            } else {
+                pending.add(message);
+                bind();
+            }
+        });
+    }
+
+    void close() {
+        handler.post(() -> {
+            if (service != null) {
+                deliver(Message.obtain(null, UpdaterProtocol.MSG_UNREGISTER));
+            }
+            UserPresence.setListener(null);
+            if (bound) {
+                context.unbindService(connection);
+                bound = false;
+            }
+            service = null;
+            pending.clear();
+            failCallbacks("The updater was closed.");
+        });
+    }
+
+    private void bind() {
+        if (bound) {
+            return;
+        }
+        bound = context.bindService(new Intent(context, UpdaterService.class), connection, Context.BIND_AUTO_CREATE);
+        if (!bound) {
+            pending.clear();
+            failCallbacks("Unable to start the updater.");
+        }
+    }
+
+    private void deliver(Message message) {
+        message.replyTo = replyTo;
+        try {
+            service.send(message);
+        } catch (RemoteException e) {
+            // onServiceDisconnected() follows, fail this request right away.
+            Callback callback = callbacks.get(message.arg1);
+            if (callback != null) {
+                callbacks.remove(message.arg1);
+                callback.onResult(new Bundle(), e.getMessage());
+            }
+        }
+    }
+
+    private void failCallbacks(String error) {
+        SparseArray<Callback> failed = callbacks.clone();
+        callbacks.clear();
+        for (int i = 0; i < failed.size(); i++) {
+            failed.valueAt(i).onResult(new Bundle(), error);
+        }
+    }
+
+    private boolean handleMessage(Message msg) {
+        Bundle data = msg.getData();
+        if (msg.what == UpdaterProtocol.MSG_RESULT) {
+            Callback callback = callbacks.get(msg.arg1);
+            if (callback != null) {
+                callbacks.remove(msg.arg1);
+                callback.onResult(data, data.getString(UpdaterProtocol.KEY_ERROR));
+            }
+            return true;
+        }
+        listener.onEvent(msg.what, data);
+        return true;
+    }
+
+    @Override
+    public void onPresenceChanged(boolean foreground, long lastInteractionAt) {
+        Bundle data = new Bundle();
+        data.putBoolean(UpdaterProtocol.KEY_FOREGROUND, foreground);
+        data.putLong(UpdaterProtocol.KEY_LAST_INTERACTION_AT, lastInteractionAt);
+        send(UpdaterProtocol.MSG_PRESENCE, data);
+    }
+}
@@ -0,0 +1,26 @@
+package so.onekey.app.wallet;
+
+import android.os.SystemClock;
+
+/**
+ * Time source of {@link UpdateStats}, {@link BandwidthLimiter} and the transfer loop.
+ * <p>
+ * JVM tests pass their own, {@link SystemClock} only returns 0 there.
+ */
+public interface UpdaterClock {
+    UpdaterClock SYSTEM = new UpdaterClock() {
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public void sleep(long ms) throws InterruptedException {
+            Thread.sleep(ms);
+        }
+    };
+
+    long elapsedRealtime();
+
+    void sleep(long ms) throws InterruptedException;
+}
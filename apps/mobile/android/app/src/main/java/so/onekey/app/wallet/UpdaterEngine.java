@@ -0,0 +1,687 @@
+package so.onekey.app.wallet;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageInstaller;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+
+/**
+ * Download, verification and install session handling of an update, without any React
+ * dependency so it can run in the {@code :updater} process hosted by {@link UpdaterService}.
+ */
+class UpdaterEngine {
+    private static final long DEFAULT_MIN_BYTES_PER_SECOND = 32 * 1024;
+    private static final long CANCEL_TIMEOUT_MS = 5 * 1000;
+    private static final String[] VERIFICATION_TEMP_NAMES = {
+            "gpg-verification-temp", "gpg-verification-tree-temp", "gpg-verification-batch-temp",
+            "gpg-verification-release-temp"};
+
+    interface Listener {
+        void onStart();
+
+        void onProgress(int progress, long bytesPerSecond, long limitBytesPerSecond);
+
+        void onDownloaded(Bundle summary);
+
+        /**
+         * The update is ready to install, {@code file} is null when it was streamed into an
+         * install session.
+         */
+        void onVerified(@Nullable File file);
+
+        /**
+         * The download or its verification failed.
+         */
+        void onFailed(String message);
+
+        /**
+         * Reported to JS as {@code update/error}.
+         */
+        void onError(@Nullable String message);
+
+        /**
+         * The package installer reported the final status of a committed install session.
+         */
+        void onInstallStatus();
+    }
+
+    private final Context context;
+    private final Listener listener;
+    // The directory JS downloads into, see auto-update/index.android.ts.
+    private final ArtifactCache cache;
+    private volatile Thread rThread;
+    private volatile UpdateDownloader mDownloader;
+    private volatile boolean isDownloading = false;
+    private volatile UpdateStats mStats = new UpdateStats();
+    private volatile String mStatus = "idle";
+    private volatile int mProgress = 0;
+    // Downloaded and verified, waiting for install() to commit it.
+    private volatile InstallSession mInstallSession;
+    // Committed, the package installer has not reported the final status yet.
+    private volatile boolean mAwaitingInstallStatus;
+    // Signed chunk hashes of the latest download, checked in parallel instead of one SHA-256.
+    private volatile TreeHashTracker mTreeHash;
+    private volatile String mTreeHashUrl;
+    // Picked from the signed release manifest, checked against its entry instead of SHA256SUMS.
+    private volatile ReleaseManifest.Artifact mArtifact;
+    private volatile File mArtifactFile;
+    private boolean swept;
+
+    UpdaterEngine(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        this.cache = new ArtifactCache(new File(this.context.getCacheDir(), "apk"));
+    }
+
+    String getStatus() {
+        return mStatus;
+    }
+
+    int getProgress() {
+        return mProgress;
+    }
+
+    boolean isDownloading() {
+        return isDownloading;
+    }
+
+    /**
+     * Downloading or verifying the download.
+     */
+    boolean isBusy() {
+        return isDownloading || "verifying".equals(mStatus);
+    }
+
+    /**
+     * Holds a verified install session, or one was committed and its status is still to come.
+     */
+    boolean hasInstallSession() {
+        return mInstallSession != null || mAwaitingInstallStatus;
+    }
+
+    Bundle getStats() {
+        return mStats.toBundle();
+    }
+
+    static File buildFile(String path) {
+        return new File(path.replace("file:///", "/"));
+    }
+
+    /**
+     * Removes partial and unindexed files, the artifact of the installed version and
+     * signature temp files, once per process. A download runs it first itself, so it never
+     * overlaps the sweep, whichever of the two starts first.
+     */
+    synchronized void sweepCache() {
+        if (swept) {
+            return;
+        }
+        swept = true;
+        String installedVersion = null;
+        try {
+            installedVersion = context.getPackageManager().getPackageInfo(context.getPackageName(), 0).versionName;
+        } catch (PackageManager.NameNotFoundException e) {
+            Tracing.d("UPDATE APP", "installed version unknown: %s", e.getMessage());
+        }
+        List<File> deleted = cache.sweep(installedVersion);
+        for (String name : VERIFICATION_TEMP_NAMES) {
+            new File(context.getCacheDir(), name).delete();
+        }
+        if (Tracing.LOGGABLE) {
+            Tracing.d("UPDATE APP", "artifact cache swept, %d files deleted, %d bytes kept", deleted.size(), cache.totalBytes());
+        }
+    }
+
+    private String buildVerificationCachePath(String name) {
+        String cacheFilePath = context.getCacheDir().getAbsolutePath() + "/" + name;
+        File cacheFile = new File(cacheFilePath);
+        if (cacheFile.exists()) {
+            cacheFile.delete();
+        }
+        return cacheFilePath;
+    }
+
+    private void failDownload(Exception e) {
+        isDownloading = false;
+        mStatus = "failed";
+        listener.onError(e.getMessage());
+        listener.onFailed(e.getMessage());
+    }
+
+    /**
+     * Returns the verified digest, {@code sha256:<hex>} or {@code treehash:<root hash>}.
+     */
+    String checkFilePackage(File file, @Nullable String downloadUrl) throws Exception {
+        Tracing.beginSection("update.verify");
+        try {
+            return checkFilePackageInternal(file, downloadUrl);
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /**
+     * Fetches the SHA256SUMS file signed for {@code downloadUrl} and returns the verified hash.
+     */
+    private String fetchSignedSha256(@Nullable String downloadUrl, UpdateStats stats) throws Exception {
+        // Fetch the signature file
+        long phaseStart = SystemClock.elapsedRealtime();
+        String ascFileUrl = downloadUrl + ".SHA256SUMS.asc";
+        String ascFileContentString = ArtifactVerifier.fetchAscFile(new OkHttpClient(), ascFileUrl);
+        stats.setSignatureFetchMs(SystemClock.elapsedRealtime() - phaseStart);
+
+        if (ascFileContentString.isEmpty()) {
+            throw new Exception("Installation package possibly compromised");
+        }
+
+        // Verify GPG signature
+        // Extract SHA256 from the verified content
+        String cacheFilePath = buildVerificationCachePath("gpg-verification-temp");
+        phaseStart = SystemClock.elapsedRealtime();
+        String extractedSha256 = Verification.extractedSha256FromVerifyAscFile(ascFileContentString, cacheFilePath);
+        stats.setPgpVerifyMs(SystemClock.elapsedRealtime() - phaseStart);
+
+        if (extractedSha256.isEmpty()) {
+            throw new Exception("Installation package possibly compromised");
+        }
+        return extractedSha256;
+    }
+
+    /**
+     * Fetches the signed tree hash manifest published as {@code <downloadUrl>.TREEHASH.asc}.
+     * Returns null when the release has none, verification then falls back to SHA256SUMS.
+     */
+    @Nullable
+    private TreeHashManifest fetchSignedTreeHash(String downloadUrl, UpdateStats stats) {
+        try {
+            long phaseStart = SystemClock.elapsedRealtime();
+            String ascFileContentString = ArtifactVerifier.fetchAscFile(new OkHttpClient(), downloadUrl + ".TREEHASH.asc");
+            stats.setSignatureFetchMs(SystemClock.elapsedRealtime() - phaseStart);
+            if (ascFileContentString.isEmpty()) {
+                return null;
+            }
+            phaseStart = SystemClock.elapsedRealtime();
+            TreeHashManifest manifest = Verification.extractedTreeHashManifestFromVerifyAscFile(ascFileContentString, buildVerificationCachePath("gpg-verification-tree-temp"));
+            stats.setPgpVerifyMs(SystemClock.elapsedRealtime() - phaseStart);
+            return manifest;
+        } catch (Exception e) {
+            Tracing.d("UPDATE APP", "tree hash manifest unavailable: %s", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Fetches the armored release manifest, kept with the cached artifact once it is verified.
+     */
+    private String fetchReleaseManifest(String manifestUrl, UpdateStats stats) throws Exception {
+        long phaseStart = SystemClock.elapsedRealtime();
+        String ascFileContentString = ArtifactVerifier.fetchAscFile(new OkHttpClient(), manifestUrl);
+        stats.setSignatureFetchMs(SystemClock.elapsedRealtime() - phaseStart);
+        if (ascFileContentString.isEmpty()) {
+            throw new Exception("Installation package possibly compromised");
+        }
+        return ascFileContentString;
+    }
+
+    /**
+     * Verifies the signature of a release manifest for {@code version} and picks the artifact
+     * for this install's flavor, ABIs and screen density.
+     */
+    private ReleaseManifest.Artifact selectArtifact(String ascFileContentString, String version, UpdateStats stats) throws Exception {
+        long phaseStart = SystemClock.elapsedRealtime();
+        ReleaseManifest manifest = Verification.extractedReleaseManifestFromVerifyAscFile(ascFileContentString, buildVerificationCachePath("gpg-verification-release-temp"));
+        stats.setPgpVerifyMs(SystemClock.elapsedRealtime() - phaseStart);
+        if (manifest == null) {
+            throw new Exception("Installation package possibly compromised");
+        }
+        // An older signed manifest must not downgrade the update.
+        if (!manifest.getVersion().equals(version)) {
+            throw new Exception("Release manifest version mismatch");
+        }
+        String density = ReleaseManifest.densityBucket(context.getResources().getDisplayMetrics().densityDpi);
+        ReleaseManifest.Artifact artifact = manifest.select(BuildConfig.FLAVOR, Build.SUPPORTED_ABIS, density);
+        if (artifact == null) {
+            throw new Exception("No installation package for this device");
+        }
+        if (Tracing.LOGGABLE) {
+            Tracing.d("UPDATE APP", "selected %s for %s %s", artifact.getName(), Build.SUPPORTED_ABIS[0], density);
+        }
+        stats.setArtifact(artifact.getName());
+        return artifact;
+    }
+
+    @Nullable
+    private ReleaseManifest.Artifact artifactFor(File file) {
+        ReleaseManifest.Artifact artifact = mArtifact;
+        return artifact != null && file.getAbsoluteFile().equals(mArtifactFile) ? artifact : null;
+    }
+
+    @Nullable
+    private TreeHashTracker treeHashFor(@Nullable String downloadUrl) {
+        TreeHashTracker treeHash = mTreeHash;
+        return treeHash != null && downloadUrl != null && downloadUrl.equals(mTreeHashUrl) ? treeHash : null;
+    }
+
+    private String checkFilePackageInternal(File file, @Nullable String downloadUrl) throws Exception {
+        UpdateStats stats = mStats;
+        long phaseStart = SystemClock.elapsedRealtime();
+        PackageManager pm = context.getPackageManager();
+        PackageInfo info = pm.getPackageArchiveInfo(file.getAbsolutePath(), 0);
+        String appPackageName = context.getPackageName();
+        if (info != null && info.packageName != null) {
+            Tracing.d("check-packageName:", "%s %s", info.packageName, appPackageName);
+            if (!info.packageName.equals(appPackageName)) {
+                throw new Exception("Installation package name mismatch");
+            }
+        }
+        stats.setPackageCheckMs(SystemClock.elapsedRealtime() - phaseStart);
+
+        TreeHashTracker treeHash = treeHashFor(downloadUrl);
+        if (treeHash != null) {
+            // Right after a download only chunks not verified on the fly are left.
+            phaseStart = SystemClock.elapsedRealtime();
+            boolean valid = treeHash.verifyRemaining(file);
+            stats.setHashMs(SystemClock.elapsedRealtime() - phaseStart);
+            // Later checks re-hash every chunk, the file may have changed since.
+            treeHash.reset();
+            if (!valid) {
+                throw new Exception("Installation package possibly compromised");
+            }
+            return "treehash:" + treeHash.getManifest().rootHash();
+        }
+
+        String extractedSha256;
+        ReleaseManifest.Artifact artifact = artifactFor(file);
+        // Also a cache hit claimed by this download, its recorded digest must agree as well.
+        ArtifactCache.Entry recorded = cache.find(file);
+        if (artifact == null && recorded != null) {
+            String signedManifest = cache.signedManifest(recorded.version);
+            if (signedManifest != null) {
+                // Selected by an earlier updater process, SHA256SUMS does not list the split
+                // APKs of a release manifest. Its signature is checked again, the index is not.
+                artifact = selectArtifact(signedManifest, recorded.version, stats);
+            }
+        }
+        if (artifact != null) {
+            // Signed with the release manifest the artifact was selected from.
+            if (file.length() != artifact.size) {
+                throw new Exception("Installation package possibly compromised");
+            }
+            extractedSha256 = artifact.sha256;
+        } else {
+            // Verify SHA256 and GPG signature
+            extractedSha256 = fetchSignedSha256(downloadUrl, stats);
+        }
+
+        // Verify SHA256
+        phaseStart = SystemClock.elapsedRealtime();
+        String calculatedSha256 = ArtifactVerifier.sha256Hex(file);
+        stats.setHashMs(SystemClock.elapsedRealtime() - phaseStart);
+
+        Tracing.d("cal-sha256", "%s %s", calculatedSha256, extractedSha256);
+        if (!ArtifactVerifier.matchesSigned(calculatedSha256, extractedSha256, recorded != null ? recorded.digest : null)) {
+            throw new Exception("Installation package possibly compromised");
+        }
+        return "sha256:" + calculatedSha256;
+    }
+
+    /**
+     * Compares the hash computed while streaming into the install session with the signed one,
+     * the session is abandoned on any mismatch or error.
+     */
+    private void checkInstallSession(InstallSession session, @Nullable String downloadUrl, @Nullable ReleaseManifest.Artifact artifact) throws Exception {
+        Tracing.beginSection("update.verify");
+        try {
+            // Hashed while downloading, there is no separate hashing phase.
+            mStats.setHashMs(0);
+            String extractedSha256 = artifact != null ? artifact.sha256 : fetchSignedSha256(downloadUrl, mStats);
+            String calculatedSha256 = session.sha256Hex();
+            Tracing.d("cal-sha256", "%s %s", calculatedSha256, extractedSha256);
+            if (!calculatedSha256.equals(extractedSha256)) {
+                throw new Exception("Installation package possibly compromised");
+            }
+            mInstallSession = session;
+        } catch (Exception e) {
+            session.abandon();
+            throw e;
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    private void abandonInstallSession() {
+        InstallSession session = mInstallSession;
+        mInstallSession = null;
+        if (session != null) {
+            session.abandon();
+        }
+    }
+
+    /**
+     * Same checks as right after the download, a verified install session needs none.
+     */
+    void verify(String filePath, @Nullable String downloadUrl) throws Exception {
+        File downloadedFile = buildFile(filePath);
+        if (!downloadedFile.exists()) {
+            if (mInstallSession != null) {
+                // Streamed into an install session, it was verified right after the download.
+                return;
+            }
+            throw new Exception("The APK file does not exist.");
+        }
+        checkFilePackage(downloadedFile, downloadUrl);
+    }
+
+    /**
+     * Commits a verified install session and returns true, otherwise verifies {@code filePath}
+     * and returns false, the caller then starts the installer for the file.
+     */
+    boolean install(String filePath, @Nullable String downloadUrl) throws Exception {
+        InstallSession installSession = mInstallSession;
+        if (installSession != null) {
+            mInstallSession = null;
+            // Keeps the service, and the receiver registered in this process, until the
+            // installer reports back.
+            mAwaitingInstallStatus = true;
+            try {
+                installSession.commit(new InstallSession.StatusListener() {
+                    @Override
+                    public void onStatus(int status, @Nullable String message) {
+                        mAwaitingInstallStatus = false;
+                        if (status != PackageInstaller.STATUS_SUCCESS) {
+                            // Also reached when the user declines, the session is gone either way.
+                            mStatus = "failed";
+                            listener.onError(message);
+                        }
+                        listener.onInstallStatus();
+                    }
+                });
+            } catch (RuntimeException e) {
+                mAwaitingInstallStatus = false;
+                throw e;
+            }
+            return true;
+        }
+        checkFilePackage(buildFile(filePath), downloadUrl);
+        return false;
+    }
+
+    /**
+     * Verifies several downloaded artifacts against one signed SHA256SUMS manifest, with one
+     * {filePath, entry, valid, sha256, error} result per file. Only throws when the manifest
+     * itself cannot be fetched or verified.
+     */
+    ArrayList<Bundle> verifyArtifacts(String manifestUrl, List<Bundle> files) throws Exception {
+        List<ArtifactVerifier.Entry> entries = new ArrayList<>();
+        for (Bundle file : files) {
+            entries.add(new ArtifactVerifier.Entry(buildFile(file.getString(UpdaterProtocol.KEY_FILE_PATH)), file.getString(UpdaterProtocol.KEY_ENTRY)));
+        }
+        String ascFileContent = ArtifactVerifier.fetchAscFile(new OkHttpClient(), manifestUrl);
+        Map<String, String> manifest = ascFileContent.isEmpty()
+                ? new HashMap<>()
+                : Verification.extractedSha256SumsFromVerifyAscFile(ascFileContent, buildVerificationCachePath("gpg-verification-batch-temp"));
+        if (manifest.isEmpty()) {
+            throw new Exception("Installation package possibly compromised");
+        }
+        ArrayList<Bundle> results = new ArrayList<>();
+        for (ArtifactVerifier.Result result : ArtifactVerifier.verifyAll(manifest, entries)) {
+            Bundle item = new Bundle();
+            item.putString(UpdaterProtocol.KEY_FILE_PATH, result.entry.file.getAbsolutePath());
+            item.putString(UpdaterProtocol.KEY_ENTRY, result.entry.name);
+            item.putBoolean(UpdaterProtocol.KEY_VALID, result.valid);
+            item.putString(UpdaterProtocol.KEY_SHA256, result.sha256);
+            item.putString(UpdaterProtocol.KEY_ERROR, result.error);
+            results.add(item);
+        }
+        return results;
+    }
+
+    /**
+     * Stops the download and deletes every cached artifact. Waits a while for the download
+     * thread to stop writing, call it off the main thread.
+     */
+    void cancel() {
+        Thread thread = this.rThread;
+        if (thread != null) {
+            thread.interrupt();
+            UpdateDownloader downloader = mDownloader;
+            if (downloader != null) {
+                // Also aborts a connect, which does not notice the interrupt.
+                downloader.cancel();
+            }
+            try {
+                // The thread clears isDownloading itself once it no longer touches the file.
+                thread.join(CANCEL_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        abandonInstallSession();
+        mArtifact = null;
+        mArtifactFile = null;
+        // A file still being written is left to the next sweep.
+        cache.clear();
+        mStatus = "idle";
+        mProgress = 0;
+    }
+
+    /**
+     * Starts a download described by the {@code KEY_*} download options of
+     * {@link UpdaterProtocol}, ignored while another one is running.
+     */
+    void download(Bundle options) {
+        String url = options.getString(UpdaterProtocol.KEY_URL);
+        // Signed list of per flavor, ABI and density artifacts, replaces `url` and the mirrors.
+        String releaseManifestUrl = options.getString(UpdaterProtocol.KEY_RELEASE_MANIFEST_URL);
+        String filePath = options.getString(UpdaterProtocol.KEY_FILE_PATH);
+        File downloadedFile = buildFile(filePath);
+        // Cache key of the artifact, older clients only pass the version in the file name.
+        String version = options.getString(UpdaterProtocol.KEY_VERSION, downloadedFile.getName().replaceFirst("\\.apk$", ""));
+        // Optional ordered mirror list, `url` stays the canonical location of the signature file.
+        List<String> mirrors = new ArrayList<>();
+        ArrayList<String> mirrorList = options.getStringArrayList(UpdaterProtocol.KEY_MIRRORS);
+        if (mirrorList != null) {
+            mirrors.addAll(mirrorList);
+        }
+        if (mirrors.isEmpty()) {
+            mirrors.add(url);
+        }
+        long minBytesPerSecond = options.getLong(UpdaterProtocol.KEY_MIN_BYTES_PER_SECOND, DEFAULT_MIN_BYTES_PER_SECOND);
+        // Streams into a PackageInstaller session instead of writing `filePath`.
+        boolean useInstallSession = options.getBoolean(UpdaterProtocol.KEY_INSTALL_SESSION);
+        // Verifies signed chunk hashes during the download, see TreeHashManifest.
+        boolean useTreeHash = options.getBoolean(UpdaterProtocol.KEY_TREE_HASH);
+        // Share of the link taken while the user is active in the app, see ForegroundTransferPolicy.
+        String priority = options.getString(UpdaterProtocol.KEY_PRIORITY, ForegroundTransferPolicy.PRIORITY_NORMAL);
+        long maxBytesPerSecond = options.getLong(UpdaterProtocol.KEY_MAX_BYTES_PER_SECOND, 0);
+        if (this.isDownloading) {
+            return;
+        }
+        if (useInstallSession && useTreeHash) {
+            // A session cannot be read back, chunks left unverified by a resumed range could
+            // never be checked.
+            failDownload(new Exception("Tree hash verification is not supported with an install session"));
+            return;
+        }
+        cache.setBudgetBytes(options.getLong(UpdaterProtocol.KEY_CACHE_BUDGET_BYTES, ArtifactCache.DEFAULT_BUDGET_BYTES));
+        this.isDownloading = true;
+        mStatus = "downloading";
+        mProgress = 0;
+        UpdateStats stats = new UpdateStats();
+        mStats = stats;
+        stats.markStart();
+        this.rThread = new Thread(new Runnable() {
+            private UpdateDownloader downloader;
+            boolean checkInterrupt() {
+                boolean isInterrupted = Thread.currentThread().isInterrupted();
+                if (isInterrupted && downloader != null) {
+                    this.downloader.cancel();
+                }
+                return isInterrupted;
+            };
+
+            public void run() {
+                sweepCache();
+                cache.begin(downloadedFile);
+                try {
+                    runDownload();
+                } finally {
+                    cache.end(downloadedFile);
+                    // A newer download, started once this one was verifying, owns both.
+                    if (rThread == Thread.currentThread()) {
+                        mDownloader = null;
+                        isDownloading = false;
+                    }
+                }
+            }
+
+            private void runDownload() {
+                abandonInstallSession();
+                mArtifact = null;
+                mArtifactFile = null;
+                ReleaseManifest.Artifact artifact = null;
+                String signedManifest = null;
+                if (releaseManifestUrl != null) {
+                    try {
+                        signedManifest = fetchReleaseManifest(releaseManifestUrl, stats);
+                        artifact = selectArtifact(signedManifest, version, stats);
+                    } catch (Exception e) {
+                        failDownload(e);
+                        return;
+                    }
+                    mArtifact = artifact;
+                    mArtifactFile = useInstallSession ? null : downloadedFile.getAbsoluteFile();
+                }
+                final String sourceUrl = artifact != null ? artifact.url : url;
+                final List<String> sources = artifact != null ? Collections.singletonList(artifact.url) : mirrors;
+                if (!useInstallSession) {
+                    ArtifactCache.Entry cached = cache.claim(version, downloadedFile);
+                    if (cached != null && artifact != null && cached.digest.startsWith("sha256:")
+                            && !cached.digest.equals("sha256:" + artifact.sha256)) {
+                        // Another variant of this version, e.g. from before a different selection.
+                        cache.remove(version);
+                        cached = null;
+                    }
+                    if (cached != null) {
+                        // Verified before, only the signature and hash checks run again.
+                        Tracing.d("UPDATE APP", "reusing cached update %s %s", version, cached.digest);
+                        stats.markCacheHit();
+                        stats.markDownloaded();
+                        mProgress = 100;
+                        listener.onDownloaded(stats.toSummaryBundle());
+                        verifyDownload(null, sourceUrl, artifact, signedManifest);
+                        return;
+                    }
+                }
+                if (downloadedFile.exists()) {
+                    downloadedFile.delete();
+                }
+                InstallSession installSession = null;
+                UpdateDownloader.Destination destination = DownloadTarget.destination(downloadedFile);
+                if (useInstallSession) {
+                    InstallSession.abandonStale(context);
+                    try {
+                        installSession = new InstallSession(context);
+                    } catch (Exception e) {
+                        failDownload(e);
+                        return;
+                    }
+                    destination = installSession;
+                }
+                mTreeHash = null;
+                mTreeHashUrl = null;
+                if (useTreeHash) {
+                    TreeHashManifest manifest = fetchSignedTreeHash(sourceUrl, stats);
+                    if (manifest != null) {
+                        TreeHashTracker treeHash = new TreeHashTracker(manifest, destination);
+                        mTreeHash = treeHash;
+                        mTreeHashUrl = sourceUrl;
+                        destination = treeHash;
+                    }
+                }
+
+                BandwidthLimiter limiter = new BandwidthLimiter(new ForegroundTransferPolicy(priority, maxBytesPerSecond));
+                UpdateDownloader downloader = new UpdateDownloader(sources, destination, minBytesPerSecond, stats, new UpdateDownloader.Listener() {
+                    @Override
+                    public void onStart(long contentLength) {
+                        listener.onStart();
+                    }
+
+                    @Override
+                    public void onProgress(int progress, long bytesPerSecond) {
+                        mProgress = progress;
+                        Tracing.d("update/progress", "%d", progress);
+                        listener.onProgress(progress, bytesPerSecond, limiter.getCurrentCeiling());
+                    }
+                });
+                downloader.setLimiter(limiter);
+                this.downloader = downloader;
+                mDownloader = downloader;
+                try {
+                    if (!downloader.download()) {
+                        if (installSession != null) {
+                            installSession.abandon();
+                        }
+                        return;
+                    }
+                } catch (Exception e) {
+                    if (installSession != null) {
+                        installSession.abandon();
+                    }
+                    failDownload(e);
+                    return;
+                }
+                stats.markDownloaded();
+                Tracing.d("UPDATE APP", "downloadPackage: Download completed");
+                listener.onDownloaded(stats.toSummaryBundle());
+
+                if (this.checkInterrupt()) {
+                    if (installSession != null) {
+                        installSession.abandon();
+                    }
+                    return;
+                }
+                verifyDownload(installSession, sourceUrl, artifact, signedManifest);
+            }
+
+            private void verifyDownload(@Nullable InstallSession installSession, String sourceUrl,
+                                        @Nullable ReleaseManifest.Artifact artifact, @Nullable String signedManifest) {
+                isDownloading = false;
+                mStatus = "verifying";
+
+                try {
+                    if (installSession != null) {
+                        checkInstallSession(installSession, sourceUrl, artifact);
+                    } else {
+                        // Kept with the entry, a later process verifies its signature again.
+                        cache.put(version, checkFilePackage(downloadedFile, sourceUrl), downloadedFile, signedManifest);
+                    }
+                } catch (Exception e) {
+                    // The file itself is swept once no longer in use.
+                    cache.remove(version);
+                    mStatus = "failed";
+                    listener.onFailed(e.getMessage());
+                    return;
+                }
+                stats.markInstallReady();
+                mStatus = "downloaded";
+                listener.onVerified(installSession != null ? null : downloadedFile);
+            }
+        });
+        this.rThread.start();
+    }
+}
@@ -0,0 +1,67 @@
+package so.onekey.app.wallet;
+
+/**
+ * {@link android.os.Messenger} protocol between {@link UpdaterClient} in the main process and
+ * {@link UpdaterService} in the {@code :updater} process.
+ * <p>
+ * Requests that expect an answer carry a request id in {@code arg1}, the service replies with
+ * {@link #MSG_RESULT} and the same id, with {@link #KEY_ERROR} set on failure. Events are sent
+ * to every registered client and carry the current {@link #KEY_STATUS} and {@link #KEY_PROGRESS}.
+ */
+final class UpdaterProtocol {
+    // Client to service.
+    static final int MSG_REGISTER = 1;
+    static final int MSG_UNREGISTER = 2;
+    static final int MSG_PRESENCE = 3;
+    static final int MSG_DOWNLOAD = 4;
+    static final int MSG_CANCEL = 5;
+    static final int MSG_VERIFY = 6;
+    static final int MSG_INSTALL = 7;
+    static final int MSG_VERIFY_ARTIFACTS = 8;
+    static final int MSG_GET_STATS = 9;
+
+    // Service to client.
+    static final int MSG_RESULT = 100;
+    static final int MSG_EVENT_STATE = 101;
+    static final int MSG_EVENT_START = 102;
+    static final int MSG_EVENT_PROGRESS = 103;
+    static final int MSG_EVENT_DOWNLOADED = 104;
+    static final int MSG_EVENT_VERIFIED = 105;
+    static final int MSG_EVENT_FAILED = 106;
+    static final int MSG_EVENT_ERROR = 107;
+
+    static final String KEY_ERROR = "error";
+    static final String KEY_STATUS = "status";
+    static final String KEY_PROGRESS = "progress";
+    static final String KEY_BYTES_PER_SECOND = "bytesPerSecond";
+    static final String KEY_LIMIT_BYTES_PER_SECOND = "limitBytesPerSecond";
+    static final String KEY_STATS = "stats";
+    static final String KEY_MESSAGE = "message";
+    static final String KEY_COMMITTED = "committed";
+    static final String KEY_RESULTS = "results";
+
+    static final String KEY_FOREGROUND = "foreground";
+    static final String KEY_LAST_INTERACTION_AT = "lastInteractionAt";
+
+    static final String KEY_URL = "url";
+    static final String KEY_RELEASE_MANIFEST_URL = "releaseManifestUrl";
+    static final String KEY_VERSION = "version";
+    static final String KEY_CACHE_BUDGET_BYTES = "cacheBudgetBytes";
+    static final String KEY_FILE_PATH = "filePath";
+    static final String KEY_DOWNLOAD_URL = "downloadUrl";
+    static final String KEY_NOTIFICATION_TITLE = "notificationTitle";
+    static final String KEY_MIRRORS = "mirrors";
+    static final String KEY_MIN_BYTES_PER_SECOND = "minBytesPerSecond";
+    static final String KEY_INSTALL_SESSION = "installSession";
+    static final String KEY_TREE_HASH = "treeHash";
+    static final String KEY_PRIORITY = "priority";
+    static final String KEY_MAX_BYTES_PER_SECOND = "maxBytesPerSecond";
+    static final String KEY_MANIFEST_URL = "manifestUrl";
+    static final String KEY_FILES = "files";
+    static final String KEY_ENTRY = "entry";
+    static final String KEY_VALID = "valid";
+    static final String KEY_SHA256 = "sha256";
+
+    private UpdaterProtocol() {
+    }
+}
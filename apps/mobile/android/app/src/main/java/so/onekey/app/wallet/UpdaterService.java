@@ -0,0 +1,354 @@
+package so.onekey.app.wallet;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.app.Service;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.content.pm.ServiceInfo;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+
+import androidx.annotation.Nullable;
+import androidx.core.app.ActivityCompat;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Hosts {@link UpdaterEngine} in the {@code :updater} process, see {@link UpdaterProtocol}.
+ * <p>
+ * Keeping OkHttp buffers, BouncyCastle and the hashing pool out of the UI process lowers its
+ * peak memory during an update. While a download runs the service promotes itself to the
+ * foreground, so the update carries on when the UI process is killed.
+ */
+public class UpdaterService extends Service implements UpdaterEngine.Listener {
+    private static final String TAG = "UPDATE APP";
+    private static final String CHANNEL_ID = "updateApp";
+    private static final int NOTIFICATION_ID = 1;
+
+    // Only touched on the main thread.
+    private final List<Messenger> clients = new ArrayList<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ExecutorService worker = Executors.newSingleThreadExecutor();
+    private Messenger messenger;
+    private UpdaterEngine engine;
+    private NotificationManagerCompat mNotifyManager;
+    private NotificationCompat.Builder mBuilder;
+    private boolean isForeground = false;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        engine = new UpdaterEngine(this, this);
+        // Queued ahead of verify and install requests on the same worker. Downloads run on
+        // their own thread and sweep first themselves, see UpdaterEngine.sweepCache().
+        worker.execute(engine::sweepCache);
+        messenger = new Messenger(new Handler(Looper.getMainLooper(), this::handleMessage));
+        mNotifyManager = NotificationManagerCompat.from(this);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "updateApp", NotificationManager.IMPORTANCE_DEFAULT);
+            mNotifyManager.createNotificationChannel(channel);
+        }
+        mBuilder = new NotificationCompat.Builder(this, CHANNEL_ID)
+                .setContentText("Download in progress")
+                .setOngoing(true)
+                .setPriority(NotificationCompat.PRIORITY_LOW)
+                .setSmallIcon(R.drawable.ic_notification);
+    }
+
+    @Nullable
+    @Override
+    public IBinder onBind(Intent intent) {
+        return messenger.getBinder();
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        // Started by promote(), startForeground() is due even if the download already ended.
+        startForegroundCompat();
+        if (!engine.isBusy()) {
+            finish();
+        }
+        return START_NOT_STICKY;
+    }
+
+    @Override
+    public void onDestroy() {
+        worker.shutdown();
+        super.onDestroy();
+    }
+
+    private boolean handleMessage(Message msg) {
+        final Messenger replyTo = msg.replyTo;
+        final int requestId = msg.arg1;
+        final Bundle data = msg.getData();
+        switch (msg.what) {
+            case UpdaterProtocol.MSG_REGISTER:
+                if (replyTo != null && !clients.contains(replyTo)) {
+                    clients.add(replyTo);
+                    send(replyTo, Message.obtain(null, UpdaterProtocol.MSG_EVENT_STATE), null);
+                }
+                return true;
+            case UpdaterProtocol.MSG_UNREGISTER:
+                clients.remove(replyTo);
+                return true;
+            case UpdaterProtocol.MSG_PRESENCE:
+                UserPresence.restore(data.getBoolean(UpdaterProtocol.KEY_FOREGROUND), data.getLong(UpdaterProtocol.KEY_LAST_INTERACTION_AT, -1));
+                return true;
+            case UpdaterProtocol.MSG_DOWNLOAD:
+                if (engine.isDownloading()) {
+                    return true;
+                }
+                mBuilder.setContentTitle(data.getString(UpdaterProtocol.KEY_NOTIFICATION_TITLE))
+                        .setContentText("Download in progress")
+                        .setProgress(0, 0, false)
+                        .setOngoing(true)
+                        .setContentIntent(null)
+                        .setAutoCancel(false);
+                engine.download(data);
+                promote();
+                return true;
+            case UpdaterProtocol.MSG_CANCEL:
+                // Waits for the download thread to stop, keep it off the main thread.
+                worker.execute(() -> {
+                    engine.cancel();
+                    handler.post(() -> {
+                        mNotifyManager.cancel(NOTIFICATION_ID);
+                        finish();
+                        reply(replyTo, requestId, null, null);
+                    });
+                });
+                return true;
+            case UpdaterProtocol.MSG_GET_STATS:
+                reply(replyTo, requestId, engine.getStats(), null);
+                return true;
+            case UpdaterProtocol.MSG_VERIFY:
+            case UpdaterProtocol.MSG_INSTALL:
+            case UpdaterProtocol.MSG_VERIFY_ARTIFACTS:
+                // Hashing and signature checks take seconds, keep them off the main thread.
+                final int what = msg.what;
+                worker.execute(() -> handleRequest(what, data, replyTo, requestId));
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void handleRequest(int what, Bundle data, Messenger replyTo, int requestId) {
+        try {
+            Bundle result = new Bundle();
+            switch (what) {
+                case UpdaterProtocol.MSG_VERIFY:
+                    engine.verify(data.getString(UpdaterProtocol.KEY_FILE_PATH), data.getString(UpdaterProtocol.KEY_DOWNLOAD_URL));
+                    break;
+                case UpdaterProtocol.MSG_INSTALL:
+                    boolean committed = engine.install(data.getString(UpdaterProtocol.KEY_FILE_PATH), data.getString(UpdaterProtocol.KEY_DOWNLOAD_URL));
+                    result.putBoolean(UpdaterProtocol.KEY_COMMITTED, committed);
+                    break;
+                case UpdaterProtocol.MSG_VERIFY_ARTIFACTS:
+                    ArrayList<Bundle> files = data.getParcelableArrayList(UpdaterProtocol.KEY_FILES);
+                    result.putParcelableArrayList(UpdaterProtocol.KEY_RESULTS, engine.verifyArtifacts(data.getString(UpdaterProtocol.KEY_MANIFEST_URL), files));
+                    break;
+            }
+            reply(replyTo, requestId, result, null);
+        } catch (Exception e) {
+            reply(replyTo, requestId, null, e.getMessage() != null ? e.getMessage() : e.toString());
+        }
+        // A committed session keeps it started until the installer reports back, see onInstallStatus().
+        handler.post(() -> {
+            if (!engine.isBusy()) {
+                finish();
+            }
+        });
+    }
+
+    private void reply(@Nullable Messenger replyTo, int requestId, @Nullable Bundle result, @Nullable String error) {
+        if (replyTo == null) {
+            return;
+        }
+        Bundle data = result != null ? result : new Bundle();
+        if (error != null) {
+            data.putString(UpdaterProtocol.KEY_ERROR, error);
+        }
+        Message message = Message.obtain(null, UpdaterProtocol.MSG_RESULT, requestId, 0);
+        message.setData(data);
+        try {
+            replyTo.send(message);
+        } catch (RemoteException e) {
+            Tracing.d(TAG, "client gone: %s", e.getMessage());
+        }
+    }
+
+    private void send(Messenger client, Message message, @Nullable Bundle extras) {
+        Bundle data = extras != null ? new Bundle(extras) : new Bundle();
+        data.putString(UpdaterProtocol.KEY_STATUS, engine.getStatus());
+        data.putInt(UpdaterProtocol.KEY_PROGRESS, engine.getProgress());
+        message.setData(data);
+        try {
+            client.send(message);
+        } catch (RemoteException e) {
+            clients.remove(client);
+        }
+    }
+
+    /**
+     * Sends an event to every registered client, from any thread.
+     */
+    private void broadcast(final int what, @Nullable final Bundle extras) {
+        handler.post(() -> {
+            for (Messenger client : new ArrayList<>(clients)) {
+                send(client, Message.obtain(null, what), extras);
+            }
+        });
+    }
+
+    /**
+     * Starts the service on its own, so it outlives the UI process that bound it. Starting a
+     * foreground service is refused while the app is in the background, the download then only
+     * runs as long as a client stays bound.
+     */
+    private void promote() {
+        try {
+            ContextCompat.startForegroundService(this, new Intent(this, UpdaterService.class));
+        } catch (IllegalStateException e) {
+            Tracing.d(TAG, "foreground service not allowed: %s", e.getMessage());
+        }
+    }
+
+    private void startForegroundCompat() {
+        Notification notification = mBuilder.build();
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                startForeground(NOTIFICATION_ID, notification, ServiceInfo.FOREGROUND_SERVICE_TYPE_DATA_SYNC);
+            } else {
+                startForeground(NOTIFICATION_ID, notification);
+            }
+            isForeground = true;
+        } catch (RuntimeException e) {
+            Tracing.d(TAG, "startForeground: %s", e.getMessage());
+        }
+    }
+
+    /**
+     * Leaves the foreground and stops the started service, bound clients keep it alive. A
+     * verified install session lives in this process, it stays started until installed, and
+     * once committed until the status broadcast to this process arrived.
+     */
+    private void finish() {
+        if (isForeground) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            isForeground = false;
+        }
+        if (!engine.hasInstallSession()) {
+            stopSelf();
+        }
+    }
+
+    public void notifyNotification(int notificationId, NotificationCompat.Builder builder) {
+        try {
+            if (ActivityCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+                return;
+            }
+            mNotifyManager.notify(notificationId, builder.build());
+        } catch (Exception e) {
+            Tracing.d("notification", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onStart() {
+        broadcast(UpdaterProtocol.MSG_EVENT_START, null);
+    }
+
+    @Override
+    public void onProgress(int progress, long bytesPerSecond, long limitBytesPerSecond) {
+        Bundle extras = new Bundle();
+        extras.putLong(UpdaterProtocol.KEY_BYTES_PER_SECOND, bytesPerSecond);
+        extras.putLong(UpdaterProtocol.KEY_LIMIT_BYTES_PER_SECOND, limitBytesPerSecond);
+        broadcast(UpdaterProtocol.MSG_EVENT_PROGRESS, extras);
+        handler.post(() -> {
+            mBuilder.setProgress(100, progress, false);
+            notifyNotification(NOTIFICATION_ID, mBuilder);
+        });
+    }
+
+    @Override
+    public void onDownloaded(Bundle summary) {
+        Bundle extras = new Bundle();
+        extras.putBundle(UpdaterProtocol.KEY_STATS, summary);
+        broadcast(UpdaterProtocol.MSG_EVENT_DOWNLOADED, extras);
+    }
+
+    @Override
+    public void onVerified(@Nullable File file) {
+        broadcast(UpdaterProtocol.MSG_EVENT_VERIFIED, null);
+        Intent installIntent;
+        if (file == null) {
+            // The session is committed by installAPK, bring the app to the front.
+            installIntent = getPackageManager().getLaunchIntentForPackage(getPackageName());
+        } else {
+            installIntent = new Intent(Intent.ACTION_VIEW);
+            Uri apkUri = OnekeyFileProvider.getUriForFile(this, file);
+            installIntent.setDataAndType(apkUri, "application/vnd.android.package-archive");
+            installIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        }
+        installIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        final PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, installIntent, PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        handler.post(() -> {
+            finish();
+            mNotifyManager.cancel(NOTIFICATION_ID);
+            mBuilder.setContentText("Download completed, click to install")
+                    .setProgress(0, 0, false)
+                    .setOngoing(false)
+                    .setContentIntent(pendingIntent)
+                    .setAutoCancel(true);
+            notifyNotification(NOTIFICATION_ID, mBuilder);
+            Tracing.d(TAG, "downloadPackage: notifyNotification done");
+        });
+    }
+
+    @Override
+    public void onFailed(String message) {
+        Bundle extras = new Bundle();
+        extras.putString(UpdaterProtocol.KEY_MESSAGE, message);
+        broadcast(UpdaterProtocol.MSG_EVENT_FAILED, extras);
+        handler.post(() -> {
+            finish();
+            mNotifyManager.cancel(NOTIFICATION_ID);
+        });
+    }
+
+    @Override
+    public void onError(@Nullable String message) {
+        Bundle extras = new Bundle();
+        extras.putString(UpdaterProtocol.KEY_MESSAGE, message);
+        broadcast(UpdaterProtocol.MSG_EVENT_ERROR, extras);
+    }
+
+    @Override
+    public void onInstallStatus() {
+        handler.post(() -> {
+            if (!engine.isBusy()) {
+                finish();
+            }
+        });
+    }
+}
@@ -0,0 +1,83 @@
+package so.onekey.app.wallet;
+
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Whether the user is looking at and interacting with the app, fed by {@link MainActivity}.
+ * <p>
+ * The state lives in the UI process, {@link UpdaterClient} relays it to the {@code :updater}
+ * process through a {@link Listener}. {@link SystemClock#elapsedRealtime()} is shared by all
+ * processes, so the timestamps stay comparable there.
+ */
+public final class UserPresence {
+    // Interactions are published at most this often, idle detection works in tens of seconds.
+    private static final long PUBLISH_INTERVAL_MS = 5000;
+
+    public interface Listener {
+        void onPresenceChanged(boolean foreground, long lastInteractionAt);
+    }
+
+    private static volatile boolean foreground;
+    private static volatile long lastInteractionAt = -1;
+    private static volatile long publishedAt = -1;
+    @Nullable
+    private static volatile Listener listener;
+
+    private UserPresence() {
+    }
+
+    public static void onResume() {
+        foreground = true;
+        lastInteractionAt = SystemClock.elapsedRealtime();
+        publish();
+    }
+
+    public static void onPause() {
+        foreground = false;
+        publish();
+    }
+
+    public static void onUserInteraction() {
+        long now = SystemClock.elapsedRealtime();
+        lastInteractionAt = now;
+        if (publishedAt < 0 || now - publishedAt >= PUBLISH_INTERVAL_MS) {
+            publish();
+        }
+    }
+
+    private static void publish() {
+        publishedAt = SystemClock.elapsedRealtime();
+        Listener current = listener;
+        if (current != null) {
+            current.onPresenceChanged(foreground, lastInteractionAt);
+        }
+    }
+
+    public static void setListener(@Nullable Listener presenceListener) {
+        listener = presenceListener;
+        if (presenceListener != null) {
+            presenceListener.onPresenceChanged(foreground, lastInteractionAt);
+        }
+    }
+
+    /**
+     * Applies the state published by the UI process.
+     */
+    public static void restore(boolean isForeground, long interactionAt) {
+        foreground = isForeground;
+        lastInteractionAt = interactionAt;
+    }
+
+    public static boolean isForeground() {
+        return foreground;
+    }
+
+    /**
+     * In the foreground and touched within the last {@code idleMs} milliseconds.
+     */
+    public static boolean isActive(long idleMs) {
+        return foreground && lastInteractionAt >= 0 && SystemClock.elapsedRealtime() - lastInteractionAt < idleMs;
+    }
+}
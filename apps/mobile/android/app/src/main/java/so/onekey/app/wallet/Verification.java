@@ -27,6 +27,9 @@ import java.io.OutputStream;
 import java.security.Provider;
 import java.security.Security;
 import java.security.SignatureException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 
@@ -220,6 +223,9 @@ public class Verification {
         PGPSignatureList           p3 = (PGPSignatureList)pgpFact.nextObject();
         PGPSignature               sig = p3.get(0);
         PGPPublicKey publicKey = pgpRings.getPublicKey(sig.getKeyID());
+        if (publicKey == null) {
+            throw new SignatureException("Signed with an unknown key " + Long.toHexString(sig.getKeyID()));
+        }
         setupBouncyCastle();
         sig.init(new JcaPGPContentVerifierBuilderProvider().setProvider("BC"), publicKey);
 
@@ -324,10 +330,16 @@ public class Verification {
         return isLineEnding(b) || b == '\t' || b == ' ';
     }
 
-    public static String extractedSha256FromVerifyAscFile(String ascFileContent, String cacheFilePath) throws Exception {
+    private static String extractedClearTextFromVerifyAscFile(String ascFileContent, String cacheFilePath) throws Exception {
         InputStream        keyIn = PGPUtil.getDecoderStream(new ByteArrayInputStream(PUBLIC_KEY.getBytes()));
         InputStream in = new ByteArrayInputStream(ascFileContent.getBytes());
-        boolean isVerified = verifyFile(in, keyIn, cacheFilePath);
+        boolean isVerified;
+        Tracing.beginSection("update.pgpVerify");
+        try {
+            isVerified = verifyFile(in, keyIn, cacheFilePath);
+        } finally {
+            Tracing.endSection();
+        }
         if (!isVerified) {
             return "";
         }
@@ -340,7 +352,58 @@ public class Verification {
             bOut.write((byte)ch);
         }
         ascFileContentIn.close();
-        String extractedSha256 = bOut.toString().split(" ")[0];
+        return bOut.toString();
+    }
+
+    public static String extractedSha256FromVerifyAscFile(String ascFileContent, String cacheFilePath) throws Exception {
+        String clearText = extractedClearTextFromVerifyAscFile(ascFileContent, cacheFilePath);
+        if (clearText.isEmpty()) {
+            return "";
+        }
+        String extractedSha256 = clearText.split(" ")[0];
         return extractedSha256;
     }
+
+    /*
+     * verify a clear text signed tree hash manifest, see TreeHashManifest for the format,
+     * null when the signature is not valid.
+     */
+    public static TreeHashManifest extractedTreeHashManifestFromVerifyAscFile(String ascFileContent, String cacheFilePath) throws Exception {
+        String clearText = extractedClearTextFromVerifyAscFile(ascFileContent, cacheFilePath);
+        if (clearText.isEmpty()) {
+            return null;
+        }
+        return TreeHashManifest.parse(clearText);
+    }
+
+    /*
+     * verify a clear text signed release manifest, see ReleaseManifest for the format,
+     * null when the signature is not valid.
+     */
+    public static ReleaseManifest extractedReleaseManifestFromVerifyAscFile(String ascFileContent, String cacheFilePath) throws Exception {
+        String clearText = extractedClearTextFromVerifyAscFile(ascFileContent, cacheFilePath);
+        if (clearText.isEmpty()) {
+            return null;
+        }
+        return ReleaseManifest.parse(clearText);
+    }
+
+    /*
+     * verify a clear text signed SHA256SUMS file and return its "<sha256>  <file name>" lines
+     * as file name -> sha256, a line without a file name is keyed by "".
+     */
+    public static Map<String, String> extractedSha256SumsFromVerifyAscFile(String ascFileContent, String cacheFilePath) throws Exception {
+        Map<String, String> sums = new LinkedHashMap<>();
+        String clearText = extractedClearTextFromVerifyAscFile(ascFileContent, cacheFilePath);
+        for (String line : clearText.split("\r?\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            String[] parts = line.split("\\s+", 2);
+            String name = parts.length > 1 ? parts[1].replaceFirst("^\\*", "") : "";
+            sums.put(name, parts[0].toLowerCase(Locale.ROOT));
+        }
+        return sums;
+    }
 }
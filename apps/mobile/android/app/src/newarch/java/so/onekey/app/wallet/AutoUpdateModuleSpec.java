@@ -0,0 +1,13 @@
+package so.onekey.app.wallet;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+/**
+ * New architecture base of {@link AutoUpdateModule}, {@link NativeAutoUpdateModuleSpec} is
+ * generated by codegen from {@code NativeAutoUpdateModule.ts}.
+ */
+abstract class AutoUpdateModuleSpec extends NativeAutoUpdateModuleSpec {
+    AutoUpdateModuleSpec(ReactApplicationContext context) {
+        super(context);
+    }
+}
@@ -0,0 +1,13 @@
+package so.onekey.app.wallet;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+/**
+ * New architecture base of {@link BundleModule}, {@link NativeBundleSpec} is generated by
+ * codegen from {@code NativeBundle.ts}.
+ */
+abstract class BundleModuleSpec extends NativeBundleSpec {
+    BundleModuleSpec(ReactApplicationContext context) {
+        super(context);
+    }
+}
@@ -0,0 +1,13 @@
+package so.onekey.app.wallet;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+
+/**
+ * New architecture base of {@link ImageCacheModule}, {@link NativeImageCacheSpec} is generated
+ * by codegen from {@code NativeImageCache.ts}.
+ */
+abstract class ImageCacheModuleSpec extends NativeImageCacheSpec {
+    ImageCacheModuleSpec(ReactApplicationContext context) {
+        super(context);
+    }
+}
@@ -0,0 +1,14 @@
+package so.onekey.app.wallet;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+
+/**
+ * Old architecture base of {@link BundleModule}, methods are exposed through the bridge
+ * by their {@code @ReactMethod} annotations.
+ */
+abstract class BundleModuleSpec extends ReactContextBaseJavaModule {
+    BundleModuleSpec(ReactApplicationContext context) {
+        super(context);
+    }
+}
@@ -0,0 +1,14 @@
+package so.onekey.app.wallet;
+
+import com.facebook.react.bridge.ReactApplicationContext;
+import com.facebook.react.bridge.ReactContextBaseJavaModule;
+
+/**
+ * Old architecture base of {@link ImageCacheModule}, methods are exposed through the bridge
+ * by their {@code @ReactMethod} annotations.
+ */
+abstract class ImageCacheModuleSpec extends ReactContextBaseJavaModule {
+    ImageCacheModuleSpec(ReactApplicationContext context) {
+        super(context);
+    }
+}
@@ -0,0 +1,172 @@
+package so.onekey.app.wallet;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Budget eviction, reuse and the startup sweep of {@link ArtifactCache}.
+ */
+public class ArtifactCacheTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void createDir() throws IOException {
+        dir = temp.newFolder("apk");
+    }
+
+    private File artifact(String name, int size) throws IOException {
+        File file = new File(dir, name);
+        Files.write(file.toPath(), new byte[size]);
+        return file;
+    }
+
+    @Test
+    public void evictsOldestBeyondBudget() throws Exception {
+        ArtifactCache cache = new ArtifactCache(dir);
+        cache.setBudgetBytes(250);
+        File first = artifact("1.0.0.apk", 100);
+        File second = artifact("1.1.0.apk", 100);
+        cache.put("1.0.0", "sha256:a", first);
+        cache.put("1.1.0", "sha256:b", second);
+        // Touching 1.0.0 makes 1.1.0 the oldest.
+        assertNotNull(cache.claim("1.0.0", first));
+        File third = artifact("1.2.0.apk", 100);
+        cache.put("1.2.0", "sha256:c", third);
+
+        assertTrue(first.exists());
+        assertFalse(second.exists());
+        assertTrue(third.exists());
+        assertEquals(200, cache.totalBytes());
+    }
+
+    @Test
+    public void keepsNewestEvenAboveBudget() throws Exception {
+        ArtifactCache cache = new ArtifactCache(dir);
+        cache.setBudgetBytes(50);
+        File file = artifact("2.0.0.apk", 100);
+        cache.put("2.0.0", "sha256:a", file);
+        assertTrue(file.exists());
+        assertEquals(1, cache.entries().size());
+    }
+
+    @Test
+    public void claimsAcrossInstancesAndMovesToTarget() throws Exception {
+        File file = artifact("download.apk", 64);
+        new ArtifactCache(dir).put("3.0.0", "treehash:abc", file);
+
+        ArtifactCache reopened = new ArtifactCache(dir);
+        File target = new File(dir, "3.0.0.apk");
+        ArtifactCache.Entry entry = reopened.claim("3.0.0", target);
+        assertNotNull(entry);
+        assertEquals("treehash:abc", entry.digest);
+        assertEquals(target.getAbsoluteFile(), entry.file);
+        assertTrue(target.exists());
+        assertFalse(file.exists());
+        assertNull(reopened.claim("3.0.1", target));
+    }
+
+    @Test
+    public void findsRecordedDigestAcrossInstances() throws Exception {
+        File file = artifact("4.1.0.apk", 64);
+        new ArtifactCache(dir).put("4.1.0", "sha256:a", file);
+
+        ArtifactCache reopened = new ArtifactCache(dir);
+        ArtifactCache.Entry entry = reopened.find(new File(dir, "4.1.0.apk"));
+        assertNotNull(entry);
+        assertEquals("sha256:a", entry.digest);
+        assertNull(reopened.find(new File(dir, "4.2.0.apk")));
+        Files.write(file.toPath(), new byte[10]);
+        assertNull(reopened.find(file));
+    }
+
+    @Test
+    public void keepsSignedManifestWithEntry() throws Exception {
+        File file = artifact("4.2.0.apk", 64);
+        new ArtifactCache(dir).put("4.2.0", "sha256:a", file, "-----BEGIN PGP SIGNED MESSAGE-----");
+
+        ArtifactCache reopened = new ArtifactCache(dir);
+        reopened.sweep(null);
+        assertEquals("-----BEGIN PGP SIGNED MESSAGE-----", reopened.signedManifest("4.2.0"));
+        assertNull(reopened.signedManifest("4.3.0"));
+
+        // A digest recorded without a manifest must not pick up the previous one.
+        reopened.put("4.2.0", "sha256:b", file);
+        assertNull(reopened.signedManifest("4.2.0"));
+
+        reopened.put("4.2.0", "sha256:a", file, "-----BEGIN PGP SIGNED MESSAGE-----");
+        reopened.remove("4.2.0");
+        assertNull(reopened.signedManifest("4.2.0"));
+        assertFalse(new File(dir, "4.2.0.asc").exists());
+    }
+
+    @Test
+    public void tamperedIndexFailsSignedCheck() throws Exception {
+        File file = new File(dir, "4.4.0.apk");
+        Files.write(file.toPath(), "signed release".getBytes(StandardCharsets.UTF_8));
+        String signed = ArtifactVerifier.sha256Hex(file);
+        new ArtifactCache(dir).put("4.4.0", "sha256:" + signed, file);
+
+        // Same size, other content, and the index rewritten to match it.
+        Files.write(file.toPath(), "forged release".getBytes(StandardCharsets.UTF_8));
+        String forged = ArtifactVerifier.sha256Hex(file);
+        File index = new File(dir, "index");
+        String content = new String(Files.readAllBytes(index.toPath()), StandardCharsets.UTF_8);
+        Files.write(index.toPath(), content.replace(signed, forged).getBytes(StandardCharsets.UTF_8));
+
+        ArtifactCache.Entry entry = new ArtifactCache(dir).claim("4.4.0", file);
+        assertNotNull(entry);
+        assertEquals("sha256:" + forged, entry.digest);
+        assertFalse(ArtifactVerifier.matchesSigned(ArtifactVerifier.sha256Hex(entry.file), signed, entry.digest));
+
+        // The original file with only the recorded digest changed.
+        Files.write(file.toPath(), "signed release".getBytes(StandardCharsets.UTF_8));
+        assertFalse(ArtifactVerifier.matchesSigned(ArtifactVerifier.sha256Hex(file), signed, entry.digest));
+        assertTrue(ArtifactVerifier.matchesSigned(ArtifactVerifier.sha256Hex(file), signed, "sha256:" + signed));
+    }
+
+    @Test
+    public void claimDropsChangedArtifact() throws Exception {
+        ArtifactCache cache = new ArtifactCache(dir);
+        File file = artifact("4.0.0.apk", 64);
+        cache.put("4.0.0", "sha256:a", file);
+        Files.write(file.toPath(), new byte[10]);
+        assertNull(cache.claim("4.0.0", file));
+        assertTrue(cache.entries().isEmpty());
+    }
+
+    @Test
+    public void sweepRemovesOrphansAndInstalledVersion() throws Exception {
+        ArtifactCache cache = new ArtifactCache(dir);
+        File installed = artifact("5.0.0.apk", 10);
+        File pending = artifact("5.1.0.apk", 10);
+        cache.put("5.0.0", "sha256:a", installed);
+        cache.put("5.1.0", "sha256:b", pending);
+        File partial = artifact("5.2.0.apk", 5);
+        File downloading = artifact("5.3.0.apk", 5);
+        cache.begin(downloading);
+
+        cache.sweep("5.0.0");
+
+        assertFalse(installed.exists());
+        assertTrue(pending.exists());
+        assertFalse(partial.exists());
+        assertTrue(downloading.exists());
+        assertEquals(1, new ArtifactCache(dir).entries().size());
+    }
+}
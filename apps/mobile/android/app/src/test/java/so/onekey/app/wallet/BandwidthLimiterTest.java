@@ -0,0 +1,82 @@
+package so.onekey.app.wallet;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Link rate estimation of {@link BandwidthLimiter} while a policy keeps throttling.
+ */
+public class BandwidthLimiterTest {
+    private static final long READ_BYTES = 40 * 1000;
+    // Decimal, so every read below takes whole milliseconds.
+    private static final long MB = 1000 * 1000;
+
+    /**
+     * Only moves when a read takes network time or the limiter sleeps.
+     */
+    private static class ManualClock implements UpdaterClock {
+        long now = 1000;
+
+        @Override
+        public long elapsedRealtime() {
+            return now;
+        }
+
+        @Override
+        public void sleep(long ms) {
+            now += ms;
+        }
+    }
+
+    /**
+     * Reads at {@code linkBytesPerSecond} for {@code durationMs} of clock time.
+     */
+    private static long transfer(BandwidthLimiter limiter, ManualClock clock, long linkBytesPerSecond, long durationMs) throws Exception {
+        long until = clock.now + durationMs;
+        long bytes = 0;
+        while (clock.now < until) {
+            clock.now += READ_BYTES * 1000 / linkBytesPerSecond;
+            limiter.acquire(READ_BYTES);
+            bytes += READ_BYTES;
+        }
+        return bytes;
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 50);
+    }
+
+    @Test
+    public void estimateFollowsLinkWhileThrottled() throws Exception {
+        ManualClock clock = new ManualClock();
+        // Half the link once it is known, like ForegroundTransferPolicy for an active user.
+        BandwidthLimiter limiter = new BandwidthLimiter(link -> link / 2, clock);
+        transfer(limiter, clock, MB, 2000);
+        assertNear(MB, limiter.getLinkBytesPerSecond());
+        assertEquals(limiter.getLinkBytesPerSecond() / 2, limiter.getCurrentCeiling());
+
+        // The link gets four times faster while every read is throttled.
+        transfer(limiter, clock, 4 * MB, 3 * 60 * 1000);
+        long estimate = limiter.getLinkBytesPerSecond();
+        assertTrue("estimate stuck at " + estimate, estimate > 3 * MB && estimate <= 4 * MB + MB / 50);
+
+        // And slower again.
+        transfer(limiter, clock, MB / 2, 3 * 60 * 1000);
+        estimate = limiter.getLinkBytesPerSecond();
+        assertTrue("estimate stuck at " + estimate, estimate >= MB / 2 && estimate < MB);
+    }
+
+    @Test
+    public void probesOnlyBriefly() throws Exception {
+        ManualClock clock = new ManualClock();
+        BandwidthLimiter limiter = new BandwidthLimiter(link -> MB, clock);
+        long startedAt = clock.now;
+        long bytes = transfer(limiter, clock, 8 * MB, 5 * 60 * 1000);
+        // Held to the ceiling but for a short probe at link speed every half minute.
+        long bytesPerSecond = bytes * 1000 / (clock.now - startedAt);
+        assertTrue("averaged " + bytesPerSecond, bytesPerSecond > MB && bytesPerSecond < MB * 3 / 2);
+        assertNear(8 * MB, limiter.getLinkBytesPerSecond());
+    }
+}
@@ -0,0 +1,96 @@
+package so.onekey.app.wallet;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Parsing of signed release manifests and the per flavor, ABI and density artifact selection.
+ */
+public class ReleaseManifestTest {
+    private static final String[] ARM64_DEVICE = {"arm64-v8a", "armeabi-v7a", "armeabi"};
+    private static final String[] ARM32_DEVICE = {"armeabi-v7a", "armeabi"};
+    private static final String[] X86_64_DEVICE = {"x86_64", "x86"};
+
+    private static String hash(char c) {
+        StringBuilder hash = new StringBuilder();
+        for (int i = 0; i < 64; i++) {
+            hash.append(c);
+        }
+        return hash.toString();
+    }
+
+    private static final String MANIFEST = "RELEASE 1\n"
+            + "version 5.1.0\n"
+            + hash('a') + "  90000000  prod  arm64-v8a,armeabi-v7a  *  https://cdn.example/OneKey-5.1.0-prod-universal.apk\n"
+            + hash('b') + "  52000000  prod  arm64-v8a  *  https://cdn.example/OneKey-5.1.0-prod-arm64-v8a.apk\n"
+            + hash('c') + "  48000000  prod  armeabi-v7a  *  https://cdn.example/OneKey-5.1.0-prod-armeabi-v7a.apk\n"
+            + hash('d') + "  47000000  prod  arm64-v8a  xxhdpi  https://cdn.example/OneKey-5.1.0-prod-arm64-v8a-xxhdpi.apk\n"
+            + hash('E') + "  51000000  google  arm64-v8a  *  https://cdn.example/OneKey-5.1.0-google-arm64-v8a.apk\n";
+
+    @Test
+    public void parsesEntries() throws Exception {
+        ReleaseManifest manifest = ReleaseManifest.parse(MANIFEST);
+        assertEquals("5.1.0", manifest.getVersion());
+        assertEquals(5, manifest.getArtifacts().size());
+        ReleaseManifest.Artifact google = manifest.getArtifacts().get(4);
+        assertEquals(hash('e'), google.sha256);
+        assertEquals(51000000, google.size);
+        assertEquals("OneKey-5.1.0-google-arm64-v8a.apk", google.getName());
+    }
+
+    @Test
+    public void picksSmallestMatchingSplit() throws Exception {
+        ReleaseManifest manifest = ReleaseManifest.parse(MANIFEST);
+        assertEquals("OneKey-5.1.0-prod-arm64-v8a-xxhdpi.apk", manifest.select("prod", ARM64_DEVICE, "xxhdpi").getName());
+        assertEquals("OneKey-5.1.0-prod-arm64-v8a.apk", manifest.select("prod", ARM64_DEVICE, "xhdpi").getName());
+        assertEquals("OneKey-5.1.0-google-arm64-v8a.apk", manifest.select("google", ARM64_DEVICE, "xhdpi").getName());
+    }
+
+    @Test
+    public void keepsPreferredAbiOverSmallerFallback() throws Exception {
+        ReleaseManifest manifest = ReleaseManifest.parse(MANIFEST);
+        // The 32-bit split is smaller, but a 64-bit device stays on arm64-v8a.
+        assertEquals("OneKey-5.1.0-prod-arm64-v8a.apk", manifest.select("prod", ARM64_DEVICE, "hdpi").getName());
+        assertEquals("OneKey-5.1.0-prod-armeabi-v7a.apk", manifest.select("prod", ARM32_DEVICE, "hdpi").getName());
+    }
+
+    @Test
+    public void nothingForUnsupportedDevice() throws Exception {
+        ReleaseManifest manifest = ReleaseManifest.parse(MANIFEST);
+        assertNull(manifest.select("prod", X86_64_DEVICE, "xhdpi"));
+        assertNull(manifest.select("huawei", ARM64_DEVICE, "xhdpi"));
+    }
+
+    @Test
+    public void mapsDensityBuckets() {
+        assertEquals("mdpi", ReleaseManifest.densityBucket(120));
+        assertEquals("hdpi", ReleaseManifest.densityBucket(213));
+        assertEquals("xhdpi", ReleaseManifest.densityBucket(320));
+        assertEquals("xxhdpi", ReleaseManifest.densityBucket(420));
+        assertEquals("xxxhdpi", ReleaseManifest.densityBucket(560));
+    }
+
+    @Test
+    public void rejectsMalformedManifests() {
+        String[] invalid = {
+                "RELEASE 2\nversion 1.0.0\n" + hash('a') + " 1 prod * * https://x/a.apk",
+                "RELEASE 1\n" + hash('a') + " 1 prod * * https://x/a.apk",
+                "RELEASE 1\nversion 1.0.0\nabc 1 prod * * https://x/a.apk",
+                "RELEASE 1\nversion 1.0.0\n" + hash('a') + " big prod * * https://x/a.apk",
+                "RELEASE 1\nversion 1.0.0\n" + hash('a') + " 1 prod * https://x/a.apk",
+        };
+        for (String clearText : invalid) {
+            try {
+                ReleaseManifest.parse(clearText);
+                fail("parsed " + clearText);
+            } catch (IOException e) {
+                // Expected.
+            }
+        }
+    }
+}
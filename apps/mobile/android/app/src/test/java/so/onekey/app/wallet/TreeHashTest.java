@@ -0,0 +1,190 @@
+package so.onekey.app.wallet;
+
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.BufferedSink;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tree hash manifests: parallel verification of a file on disk and per-chunk verification
+ * while downloading, with contiguous, out-of-order and corrupted data.
+ */
+public class TreeHashTest {
+    private static final int CHUNK_SIZE = 256 * 1024;
+    // Deliberately not a multiple of the chunk size.
+    private static final int BODY_BYTES = 40 * CHUNK_SIZE + 12345;
+
+    private static byte[] body;
+    private static TreeHashManifest manifest;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private MockWebServer server;
+
+    @BeforeClass
+    public static void createBody() throws Exception {
+        body = new byte[BODY_BYTES];
+        new Random(7).nextBytes(body);
+        StringBuilder clearText = new StringBuilder("TREEHASH sha256 1\n")
+                .append("length ").append(BODY_BYTES).append('\n')
+                .append("chunk-size ").append(CHUNK_SIZE).append('\n');
+        for (int offset = 0; offset < BODY_BYTES; offset += CHUNK_SIZE) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(body, offset, Math.min(CHUNK_SIZE, BODY_BYTES - offset));
+            clearText.append(ArtifactVerifier.bytesToHex(digest.digest())).append('\n');
+        }
+        manifest = TreeHashManifest.parse(clearText.toString());
+    }
+
+    @After
+    public void shutdownServer() throws IOException {
+        if (server != null) {
+            server.shutdown();
+        }
+    }
+
+    private File writeBody() throws IOException {
+        File file = temp.newFile();
+        Files.write(file.toPath(), body);
+        return file;
+    }
+
+    @Test
+    public void rejectsMalformedManifests() {
+        String[] manifests = {
+                "SHA256 1\nlength 1\nchunk-size 1\n" + repeat('a', 64),
+                "TREEHASH sha256 1\nlength 10\nchunk-size 4\n" + repeat('a', 64),
+                "TREEHASH sha256 1\nlength 1\nchunk-size 0\n" + repeat('a', 64),
+                "TREEHASH sha256 1\nlength 1\nchunk-size 1\nnot-a-hash",
+        };
+        for (String text : manifests) {
+            try {
+                TreeHashManifest.parse(text);
+                fail("accepted " + text);
+            } catch (IOException expected) {
+                // Malformed.
+            }
+        }
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    @Test
+    public void verifiesFileInParallel() throws Exception {
+        File file = writeBody();
+        assertTrue(TreeHashVerifier.verifyFile(file, manifest).isEmpty());
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(17L * CHUNK_SIZE + 5);
+            randomAccessFile.write(~body[17 * CHUNK_SIZE + 5]);
+        }
+        assertEquals(Collections.singletonList(17), TreeHashVerifier.verifyFile(file, manifest));
+    }
+
+    @Test
+    public void verifiesChunksWhileDownloading() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String range = request.getHeader("Range");
+                int offset = range == null ? 0 : Integer.parseInt(range.substring("bytes=".length(), range.length() - 1));
+                MockResponse response = new MockResponse().setBody(new Buffer().write(body, offset, body.length - offset));
+                if (offset > 0) {
+                    response.setResponseCode(206);
+                }
+                if (requests.incrementAndGet() == 1) {
+                    response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+                }
+                return response;
+            }
+        });
+        server.start();
+
+        File file = temp.newFile();
+        TreeHashTracker tracker = new TreeHashTracker(manifest, DownloadTarget.destination(file));
+        UpdateDownloader downloader = new UpdateDownloader(Collections.singletonList(server.url("/app.apk").toString()),
+                tracker, 0, new UpdateStats(), new UpdateDownloader.Listener() {
+            @Override
+            public void onStart(long contentLength) {
+            }
+
+            @Override
+            public void onProgress(int progress, long bytesPerSecond) {
+            }
+        });
+        assertTrue(downloader.download());
+        assertEquals(2, requests.get());
+        // The continuation carries on the digest of the interrupted chunk.
+        assertTrue(tracker.unverifiedChunks().isEmpty());
+        assertTrue(tracker.verifyRemaining(file));
+    }
+
+    @Test
+    public void readsBackChunksWrittenOutOfOrder() throws Exception {
+        File file = temp.newFile();
+        TreeHashTracker tracker = new TreeHashTracker(manifest, DownloadTarget.destination(file));
+        int split = 3 * CHUNK_SIZE + CHUNK_SIZE / 2;
+        // Second half first, like a parallel range segment finishing early.
+        try (UpdateDownloader.Output output = tracker.create(body.length)) {
+            BufferedSink sink = output.sink(split);
+            sink.write(body, split, body.length - split);
+            sink.flush();
+        }
+        try (UpdateDownloader.Output output = tracker.resume()) {
+            BufferedSink sink = output.sink(0);
+            sink.write(body, 0, split);
+            sink.flush();
+        }
+        // Only the chunk the segments split is left, it is read back from disk.
+        assertEquals(Collections.singletonList(3), tracker.unverifiedChunks());
+        assertTrue(tracker.verifyRemaining(file));
+    }
+
+    @Test
+    public void stopsOnCorruptedChunk() throws Exception {
+        File file = temp.newFile();
+        TreeHashTracker tracker = new TreeHashTracker(manifest, DownloadTarget.destination(file));
+        byte[] corrupted = body.clone();
+        corrupted[2 * CHUNK_SIZE + 1] ^= 1;
+        try (UpdateDownloader.Output output = tracker.create(body.length)) {
+            BufferedSink sink = output.sink(0);
+            sink.write(corrupted);
+            sink.flush();
+            fail("corrupted chunk was accepted");
+        } catch (TreeHashTracker.ChunkMismatchException expected) {
+            // Chunk 2.
+        }
+        assertFalse(tracker.verifyRemaining(null));
+    }
+}
@@ -0,0 +1,346 @@
+package so.onekey.app.wallet;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.Security;
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okhttp3.mockwebserver.SocketPolicy;
+import okio.Buffer;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs {@link UpdateDownloader} and the verification helpers against a local HTTP stand-in
+ * that simulates bandwidth limits, latency, disconnects, missing Content-Length, servers
+ * ignoring Range and bad signatures.
+ * <p>
+ * Each scenario checks the bytes transferred, the file's hash and the transfer time the stats
+ * report against the wall time of the download plus hash check. Signature verification is not
+ * part of that time, it only accepts the release key and is covered on its own by
+ * {@link #rejectsForeignSignature()}. The body defaults to 16 MB, pass
+ * {@code -Pupdater.bodyBytes=157286400} to Gradle to run with a full size APK.
+ * <p>
+ * {@code SystemClock} returns 0 in JVM tests, so the stats and the limiter run on
+ * {@link #WALL_CLOCK} or on a {@link ManualClock} driven by the test.
+ */
+public class UpdaterNetworkSimulationTest {
+    private static final int BODY_BYTES = Integer.getInteger("updater.bodyBytes", 16 * 1024 * 1024);
+    private static final String PROBE_RANGE = "bytes=0-0";
+
+    private static final UpdaterClock WALL_CLOCK = new UpdaterClock() {
+        @Override
+        public long elapsedRealtime() {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+        }
+
+        @Override
+        public void sleep(long ms) throws InterruptedException {
+            Thread.sleep(ms);
+        }
+    };
+
+    /**
+     * Only moves when something sleeps on it, the network takes no time.
+     */
+    private static class ManualClock implements UpdaterClock {
+        private final AtomicLong now = new AtomicLong(1000);
+
+        @Override
+        public long elapsedRealtime() {
+            return now.get();
+        }
+
+        @Override
+        public void sleep(long ms) {
+            now.addAndGet(ms);
+        }
+    }
+
+    private static byte[] body;
+    private static String bodySha256;
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final List<MockWebServer> servers = new ArrayList<>();
+
+    @BeforeClass
+    public static void createBody() throws Exception {
+        body = new byte[BODY_BYTES];
+        new Random(42).nextBytes(body);
+        bodySha256 = ArtifactVerifier.bytesToHex(MessageDigest.getInstance("SHA-256").digest(body));
+        // Android ships its own provider, the JVM has none.
+        Security.addProvider(new BouncyCastleProvider());
+    }
+
+    @After
+    public void shutdownServers() throws IOException {
+        for (MockWebServer server : servers) {
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Serves {@link #body} with optional Range support and network impairments.
+     */
+    private static class ApkDispatcher extends Dispatcher {
+        boolean supportsRange = true;
+        boolean chunked = false;
+        long bytesPerSecond = 0;
+        long headersDelayMs = 0;
+        int failStatus = 0;
+        int disconnectFirstBodyRequests = 0;
+        final AtomicInteger bodyRequests = new AtomicInteger();
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) {
+            if (failStatus != 0) {
+                return new MockResponse().setResponseCode(failStatus);
+            }
+            String range = request.getHeader("Range");
+            int offset = 0;
+            int end = body.length;
+            boolean partial = supportsRange && range != null;
+            if (partial) {
+                String[] bounds = range.substring("bytes=".length()).split("-", -1);
+                offset = Integer.parseInt(bounds[0]);
+                if (!bounds[1].isEmpty()) {
+                    end = Integer.parseInt(bounds[1]) + 1;
+                }
+            }
+            Buffer content = new Buffer().write(body, offset, end - offset);
+            MockResponse response = new MockResponse()
+                    .setHeadersDelay(headersDelayMs, TimeUnit.MILLISECONDS);
+            if (partial) {
+                response.setResponseCode(206)
+                        .setHeader("Content-Range", "bytes " + offset + "-" + (end - 1) + "/" + body.length);
+            }
+            if (chunked) {
+                response.setChunkedBody(content, 64 * 1024);
+            } else {
+                response.setBody(content);
+            }
+            if (bytesPerSecond > 0) {
+                response.throttleBody(bytesPerSecond / 10, 100, TimeUnit.MILLISECONDS);
+            }
+            if (!PROBE_RANGE.equals(range) && bodyRequests.incrementAndGet() <= disconnectFirstBodyRequests) {
+                response.setSocketPolicy(SocketPolicy.DISCONNECT_DURING_RESPONSE_BODY);
+            }
+            return response;
+        }
+    }
+
+    private String serve(ApkDispatcher dispatcher) throws IOException {
+        MockWebServer server = new MockWebServer();
+        server.setDispatcher(dispatcher);
+        server.start();
+        servers.add(server);
+        return server.url("/OneKey-Wallet.apk").toString();
+    }
+
+    private UpdateStats runScenario(String name, List<String> mirrors) throws Exception {
+        return runScenario(name, mirrors, WALL_CLOCK, null);
+    }
+
+    private UpdateStats runScenario(String name, List<String> mirrors, UpdaterClock clock, BandwidthLimiter limiter) throws Exception {
+        File target = new File(temp.getRoot(), name + ".apk");
+        UpdateStats stats = new UpdateStats(clock);
+        UpdateDownloader downloader = new UpdateDownloader(mirrors, target, 0, stats, new UpdateDownloader.Listener() {
+            @Override
+            public void onStart(long contentLength) {
+            }
+
+            @Override
+            public void onProgress(int progress, long bytesPerSecond) {
+            }
+        });
+        if (limiter != null) {
+            downloader.setLimiter(limiter);
+        }
+        long startedAt = System.nanoTime();
+        boolean completed = downloader.download();
+        String sha256 = ArtifactVerifier.sha256Hex(target);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+
+        assertTrue(completed);
+        assertEquals(body.length, target.length());
+        assertEquals(bodySha256, sha256);
+        assertTrue(stats.getBytesTransferred() >= body.length);
+        if (clock == WALL_CLOCK) {
+            // The transfer is part of the download and hash check, never longer than it but for
+            // rounding to whole milliseconds.
+            assertTrue(name + ": " + stats.getTransferMs() + " ms transfer in " + elapsedMs + " ms",
+                    stats.getTransferMs() <= elapsedMs + 1);
+        }
+        return stats;
+    }
+
+    @Test
+    public void fullSpeed() throws Exception {
+        UpdateStats stats = runScenario("full-speed", Collections.singletonList(serve(new ApkDispatcher())));
+        assertEquals(body.length, stats.getBytesTransferred());
+        assertTrue(stats.getTransferMs() >= 0);
+    }
+
+    @Test
+    public void limitedBandwidth() throws Exception {
+        ApkDispatcher dispatcher = new ApkDispatcher();
+        dispatcher.bytesPerSecond = BODY_BYTES / 2;
+        UpdateStats stats = runScenario("limited-bandwidth", Collections.singletonList(serve(dispatcher)));
+        // Two seconds of body at the server's pace, minus the first throttle period.
+        assertTrue("transfer took " + stats.getTransferMs() + " ms", stats.getTransferMs() >= 1500);
+    }
+
+    @Test
+    public void throttledByPolicy() throws Exception {
+        final long ceiling = BODY_BYTES / 2;
+        ManualClock clock = new ManualClock();
+        BandwidthLimiter limiter = new BandwidthLimiter(linkBytesPerSecond -> ceiling, clock);
+        UpdateStats stats = runScenario("throttled", Collections.singletonList(serve(new ApkDispatcher())), clock, limiter);
+        // The first burst of a quarter second is free, the rest is paced to the ceiling.
+        long expectedMs = (BODY_BYTES - ceiling / 4) * 1000 / ceiling;
+        long throttledMs = limiter.getThrottledMs();
+        assertTrue("throttled for " + throttledMs + " ms", throttledMs >= expectedMs && throttledMs <= expectedMs + 2);
+        // Only the limiter moved the clock.
+        assertEquals(throttledMs, stats.getTransferMs());
+    }
+
+    @Test
+    public void highLatency() throws Exception {
+        ApkDispatcher dispatcher = new ApkDispatcher();
+        dispatcher.headersDelayMs = 800;
+        runScenario("high-latency", Collections.singletonList(serve(dispatcher)));
+    }
+
+    @Test
+    public void missingContentLength() throws Exception {
+        ApkDispatcher dispatcher = new ApkDispatcher();
+        dispatcher.chunked = true;
+        runScenario("missing-content-length", Collections.singletonList(serve(dispatcher)));
+    }
+
+    @Test
+    public void interruptStopsWithoutContentLength() throws Exception {
+        ApkDispatcher dispatcher = new ApkDispatcher();
+        dispatcher.chunked = true;
+        dispatcher.bytesPerSecond = BODY_BYTES / 4;
+        File target = new File(temp.getRoot(), "interrupted.apk");
+        UpdateStats stats = new UpdateStats(WALL_CLOCK);
+        UpdateDownloader downloader = new UpdateDownloader(Collections.singletonList(serve(dispatcher)), target, 0, stats, new UpdateDownloader.Listener() {
+            @Override
+            public void onStart(long contentLength) {
+            }
+
+            @Override
+            public void onProgress(int progress, long bytesPerSecond) {
+            }
+        });
+        AtomicInteger result = new AtomicInteger(-1);
+        Thread thread = new Thread(() -> {
+            try {
+                result.set(downloader.download() ? 1 : 0);
+            } catch (IOException e) {
+                result.set(2);
+            }
+        });
+        thread.start();
+        Thread.sleep(500);
+        thread.interrupt();
+        // Without a Content-Length there is no progress callback, the batch loop has to notice.
+        thread.join(2000);
+        assertFalse("still downloading after the interrupt", thread.isAlive());
+        assertEquals(0, result.get());
+        assertTrue(stats.getBytesTransferred() < body.length);
+    }
+
+    @Test
+    public void disconnectResumesWithRange() throws Exception {
+        ApkDispatcher dispatcher = new ApkDispatcher();
+        dispatcher.disconnectFirstBodyRequests = 1;
+        UpdateStats stats = runScenario("disconnect-range", Collections.singletonList(serve(dispatcher)));
+        // Bytes received before the disconnect are kept, nothing is downloaded twice.
+        assertEquals(body.length, stats.getBytesTransferred());
+    }
+
+    @Test
+    public void disconnectWithoutRangeSupportRestarts() throws Exception {
+        ApkDispatcher dispatcher = new ApkDispatcher();
+        dispatcher.supportsRange = false;
+        dispatcher.disconnectFirstBodyRequests = 1;
+        runScenario("disconnect-no-range", Collections.singletonList(serve(dispatcher)));
+    }
+
+    @Test
+    public void failingMirrorFallsBack() throws Exception {
+        ApkDispatcher failing = new ApkDispatcher();
+        failing.failStatus = 503;
+        runScenario("mirror-failover", Arrays.asList(serve(failing), serve(new ApkDispatcher())));
+    }
+
+    @Test
+    public void disconnectingMirrorContinuesOnNext() throws Exception {
+        ApkDispatcher flaky = new ApkDispatcher();
+        flaky.disconnectFirstBodyRequests = Integer.MAX_VALUE;
+        runScenario("mirror-disconnect", Arrays.asList(serve(flaky), serve(new ApkDispatcher())));
+    }
+
+    @Test
+    public void rejectsForeignSignature() throws Exception {
+        String ascFileContent;
+        try (InputStream in = getClass().getResourceAsStream("/foreign-key.SHA256SUMS.asc")) {
+            ascFileContent = Okio.buffer(Okio.source(in)).readString(StandardCharsets.UTF_8);
+        }
+        MockWebServer server = new MockWebServer();
+        servers.add(server);
+        server.enqueue(new MockResponse().setBody(ascFileContent));
+        server.enqueue(new MockResponse().setResponseCode(404));
+        server.start();
+        OkHttpClient client = new OkHttpClient();
+
+        String fetched = ArtifactVerifier.fetchAscFile(client, server.url("/OneKey-Wallet.apk.SHA256SUMS.asc").toString());
+        assertEquals(ascFileContent.trim(), fetched.trim());
+        assertFalse(fetched.isEmpty());
+        String cacheFilePath = new File(temp.getRoot(), "gpg-verification-temp").getAbsolutePath();
+        try {
+            Verification.extractedSha256FromVerifyAscFile(fetched, cacheFilePath);
+            fail("signature from an unknown key was accepted");
+        } catch (SignatureException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith("Signed with an unknown key "));
+        }
+
+        try {
+            ArtifactVerifier.fetchAscFile(client, server.url("/missing.SHA256SUMS.asc").toString());
+            fail("missing signature file was accepted");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("code=404"));
+        }
+    }
+}
@@ -1,6 +1,6 @@
 const asyncRequire = require('metro-runtime/src/modules/asyncRequire');
 const chunkModuleIdToHashMap = require('__CHUNK_MODULE_ID_TO_HASH_MAP__');
-const { NativeModules } = require('react-native');
+const { NativeModules, TurboModuleRegistry } = require('react-native');
 
 const fetchHttpModule = async (hash) => {
   const url = `http://__METRO_HOST_IP__:8081/async-thunks?hash=${hash}`;
@@ -14,7 +14,7 @@ const fetchHttpModule = async (hash) => {
   }
 };
 
-const { Bundle } = NativeModules;
+const Bundle = TurboModuleRegistry.get('Bundle') || NativeModules.Bundle;
 const fetchNativeModule = (hash) =>
   new Promise((resolve) => {
     const { pendingChunks } = global;
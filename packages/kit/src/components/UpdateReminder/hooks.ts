@@ -37,7 +37,11 @@ export const useAppChangeLog = (version?: string) => {
 export const useDownloadPackage = () => {
   const intl = useIntl();
   return useCallback(
-    async (params: { downloadUrl?: string; latestVersion?: string }) => {
+    async (params: {
+      downloadUrl?: string;
+      releaseManifestUrl?: string;
+      latestVersion?: string;
+    }) => {
       try {
         await backgroundApiProxy.serviceAppUpdate.startDownloading();
         const result = await NativeDownloadPackage(params);
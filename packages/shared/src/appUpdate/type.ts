@@ -6,6 +6,8 @@ export interface IBasicAppUpdateInfo {
   storeUrl?: string;
   // app download url
   downloadUrl?: string;
+  // signed release manifest, the native side picks the artifact for this device
+  releaseManifestUrl?: string;
   // is force update required
   isForceUpdate: boolean;
   // change log text
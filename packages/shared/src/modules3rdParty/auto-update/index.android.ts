@@ -1,10 +1,11 @@
 import { useCallback, useEffect, useState } from 'react';
 
-import { NativeEventEmitter, NativeModules } from 'react-native';
+import { NativeEventEmitter } from 'react-native';
 import { useThrottledCallback } from 'use-debounce';
 
 import { defaultLogger } from '../../logger/logger';
 import RNFS from '../react-native-fs';
+import AutoUpdateModule from '../turbo-module-specs/NativeAutoUpdateModule';
 
 import type {
   IClearPackage,
@@ -17,27 +18,6 @@ import type {
 const DIR_PATH = `file://${RNFS?.CachesDirectoryPath || ''}/apk`;
 const buildFilePath = (version: string) => `${DIR_PATH}/${version}.apk`;
 
-const { AutoUpdateModule } = NativeModules as {
-  AutoUpdateModule: {
-    clearCache: () => Promise<void>;
-    downloadAPK: (params: {
-      url: string;
-      filePath: string;
-      notificationTitle: string;
-    }) => Promise<void>;
-    // an exception will be thrown when validation fails.
-    verifyAPK: (params: {
-      filePath: string;
-      downloadUrl: string;
-    }) => Promise<void>;
-    // verifyAPK will be called by default in the native module when calling to install the APK
-    installAPK: (params: {
-      filePath: string;
-      downloadUrl: string;
-    }) => Promise<void>;
-  };
-};
-
 export const clearPackage: IClearPackage = async () => {
   if (!AutoUpdateModule) {
     return;
@@ -54,6 +34,11 @@ export const clearPackage: IClearPackage = async () => {
 
 export const downloadPackage: IDownloadPackage = async ({
   downloadUrl,
+  downloadMirrors,
+  releaseManifestUrl,
+  installMode,
+  hashManifest,
+  downloadPriority,
   latestVersion,
 }) => {
   if (!AutoUpdateModule) {
@@ -68,7 +53,13 @@ export const downloadPackage: IDownloadPackage = async ({
   const filePath = buildFilePath(latestVersion);
   await AutoUpdateModule.downloadAPK({
     url: downloadUrl,
+    mirrors: downloadMirrors,
+    releaseManifestUrl,
+    installMode,
+    hashManifest,
+    priority: downloadPriority,
     filePath,
+    version: latestVersion,
     notificationTitle: 'Downloading',
   });
   return {
@@ -103,26 +94,41 @@ export const installPackage: IInstallPackage = async ({
   });
 };
 
-const eventEmitter = new NativeEventEmitter(NativeModules.AutoUpdateModule);
+const eventEmitter = new NativeEventEmitter(AutoUpdateModule);
 export const useDownloadProgress: IUseDownloadProgress = (
   onSuccess,
   onFailed,
 ) => {
-  const [percent, setPercent] = useState(0);
+  // restore the progress of a download started before this component mounted.
+  const [percent, setPercent] = useState(
+    () => AutoUpdateModule?.getDownloadProgress() ?? 0,
+  );
 
   const updatePercent = useThrottledCallback(
-    ({ progress }: { progress: number }) => {
-      console.log('update/downloading', progress);
+    ({
+      progress,
+      bytesPerSecond,
+    }: {
+      progress: number;
+      bytesPerSecond?: number;
+    }) => {
+      console.log('update/downloading', progress, bytesPerSecond);
       defaultLogger.update.app.log('downloading', progress);
       setPercent(progress);
     },
     10,
   );
 
-  const handleSuccess = useCallback(() => {
-    defaultLogger.update.app.log('downloaded');
-    onSuccess();
-  }, [onSuccess]);
+  const handleSuccess = useCallback(
+    (params?: { stats?: Record<string, number> }) => {
+      defaultLogger.update.app.log(
+        'downloaded',
+        params?.stats ? JSON.stringify(params.stats) : '',
+      );
+      onSuccess();
+    },
+    [onSuccess],
+  );
 
   const handleFailed = useCallback(
     (params: { message: string }) => {
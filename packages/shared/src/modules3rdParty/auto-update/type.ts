@@ -8,6 +8,16 @@ export type IUpdateDownloadedEvent = {
 
 export type IDownloadPackage = (params: {
   downloadUrl?: string;
+  downloadMirrors?: string[];
+  // signed release manifest, the native side picks the artifact for this device.
+  releaseManifestUrl?: string;
+  // 'session' skips the APK file and streams into the system package installer.
+  installMode?: 'file' | 'session';
+  // 'tree' verifies per-chunk hashes while downloading, falls back to SHA256SUMS.
+  // Not supported with installMode 'session'.
+  hashManifest?: 'sha256' | 'tree';
+  // 'high' downloads at full speed even while the user is active in the app.
+  downloadPriority?: 'low' | 'normal' | 'high';
   latestVersion?: string;
 }) => Promise<IUpdateDownloadedEvent>;
 
@@ -0,0 +1,69 @@
+import { TurboModuleRegistry } from 'react-native';
+
+import type { TurboModule } from 'react-native';
+import type { UnsafeObject } from 'react-native/Libraries/Types/CodegenTypes';
+
+// Codegen spec of the Android `AutoUpdateModule`,
+// see apps/mobile/android/app/src/main/java/so/onekey/app/wallet/AutoUpdateModule.java
+export interface Spec extends TurboModule {
+  // stops the download and deletes every cached artifact.
+  clearCache(): Promise<void>;
+  downloadAPK(params: {
+    url: string;
+    filePath: string;
+    notificationTitle: string;
+    // cache key of the artifact, a verified artifact of this version is reused
+    // instead of downloaded again.
+    version?: string;
+    // signed list of the per flavor, ABI and density artifacts of `version`, the smallest
+    // one that fits this device is downloaded instead of `url` and `mirrors`.
+    releaseManifestUrl?: string;
+    // byte budget of the artifact cache, older artifacts are evicted first.
+    cacheBudgetBytes?: number;
+    // ordered mirror list, the fastest one is picked by a short probe.
+    mirrors?: string[];
+    // switch to another mirror when throughput stays below this value.
+    minBytesPerSecond?: number;
+    // 'file' (default) writes `filePath`, 'session' streams into a PackageInstaller
+    // session that is committed by installAPK once the signed SHA-256 matched.
+    installMode?: string;
+    // 'sha256' (default) checks SHA256SUMS after the download, 'tree' checks the signed
+    // chunk hashes of `<url>.TREEHASH.asc` while downloading and in parallel afterwards.
+    hashManifest?: string;
+    // 'low' | 'normal' (default) | 'high', share of the link taken while the user is
+    // active in the app, full speed in the background. 'high' is never throttled.
+    priority?: string;
+    // ceiling while the user is active in the app, 0 for none.
+    maxBytesPerSecond?: number;
+  }): Promise<void>;
+  // an exception will be thrown when validation fails.
+  verifyAPK(params: { filePath: string; downloadUrl: string }): Promise<void>;
+  // verifyAPK will be called by default in the native module when calling to install the APK
+  installAPK(params: { filePath: string; downloadUrl: string }): Promise<void>;
+  // verifies several files against one signed SHA256SUMS manifest, `entry` is the
+  // file name listed in the manifest. Resolves with one result per file.
+  verifyArtifacts(params: {
+    manifestUrl: string;
+    files: { filePath: string; entry?: string }[];
+  }): Promise<
+    {
+      filePath: string;
+      entry?: string;
+      valid: boolean;
+      sha256?: string;
+      error?: string;
+    }[]
+  >;
+  // phase timings (ms) and transfer counters of the latest update, -1 when a phase never ran.
+  getUpdateStats(): Promise<UnsafeObject>;
+  // synchronous, cheap reads of the updater state.
+  getDownloadStatus(): {
+    status: string;
+    progress: number;
+  };
+  getDownloadProgress(): number;
+  addListener(eventName: string): void;
+  removeListeners(count: number): void;
+}
+
+export default TurboModuleRegistry.get<Spec>('AutoUpdateModule');
@@ -0,0 +1,21 @@
+import { TurboModuleRegistry } from 'react-native';
+
+import type { TurboModule } from 'react-native';
+
+// Codegen spec of the Android `Bundle` module which loads split bundle segments,
+// see apps/mobile/android/app/src/main/java/so/onekey/app/wallet/BundleModule.java
+export interface Spec extends TurboModule {
+  executeSourceCode(hashId: string): void;
+  // synchronous, cheap reads of the segments loaded so far.
+  getLoadedSegments(): string[];
+  isSegmentLoaded(hashId: string): boolean;
+  // page-cache read-ahead of the startup bundles during the splash screen.
+  getPrefetchStats(): {
+    done: boolean;
+    bundles: number;
+    bytes: number;
+    durationMs: number;
+  };
+}
+
+export default TurboModuleRegistry.get<Spec>('Bundle');
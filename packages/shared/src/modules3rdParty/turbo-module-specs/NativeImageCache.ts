@@ -0,0 +1,13 @@
+import { TurboModuleRegistry } from 'react-native';
+
+import type { TurboModule } from 'react-native';
+import type { UnsafeObject } from 'react-native/Libraries/Types/CodegenTypes';
+
+// Codegen spec of the Android `ImageCache` module,
+// see apps/mobile/android/app/src/main/java/so/onekey/app/wallet/ImageCacheModule.java
+export interface Spec extends TurboModule {
+  // synchronous read of the Fresco cache hit/miss counters, cache limits and trim count.
+  getImageCacheStats(): UnsafeObject;
+}
+
+export default TurboModuleRegistry.get<Spec>('ImageCache');